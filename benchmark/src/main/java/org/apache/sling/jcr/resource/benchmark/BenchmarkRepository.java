@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.benchmark;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.sling.api.resource.external.URIProvider;
+import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
+import org.apache.sling.jcr.resource.internal.HelperData;
+
+/**
+ * An in-memory Oak repository used as the backend for the benchmarks.
+ */
+public class BenchmarkRepository {
+
+    /** The path below which all benchmark content is created. */
+    public static final String ROOT_PATH = "/bench";
+
+    private final Repository repository;
+
+    private final Session session;
+
+    public BenchmarkRepository() throws RepositoryException {
+        this.repository = new Jcr(new Oak()).createRepository();
+        this.session = login();
+    }
+
+    /**
+     * Login a new admin session.
+     * @return The session
+     * @throws RepositoryException If login fails
+     */
+    public Session login() throws RepositoryException {
+        return this.repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+    }
+
+    /**
+     * The admin session used to set up the content.
+     * @return The session
+     */
+    public Session getSession() {
+        return this.session;
+    }
+
+    /**
+     * Create the given content structure below {@link #ROOT_PATH} and save it.
+     * @param shape The shape of the content
+     * @return The path of the node the single node benchmarks operate on
+     * @throws RepositoryException If creating the content fails
+     */
+    public String createContent(final TreeShape shape) throws RepositoryException {
+        final Node root = this.session.getRootNode().addNode(ROOT_PATH.substring(1), JcrConstants.NT_UNSTRUCTURED);
+        final String path = shape.create(root);
+        this.session.save();
+        return path;
+    }
+
+    /**
+     * Create the helper data as the provider does for each resolver.
+     * @return A new helper data object
+     */
+    public HelperData createHelperData() {
+        return new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
+    }
+
+    /**
+     * Logout the session and dispose the repository.
+     */
+    public void shutdown() {
+        this.session.logout();
+        if (this.repository instanceof JackrabbitRepository) {
+            ((JackrabbitRepository) this.repository).shutdown();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrModifiableValueMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for writing through the {@link JcrModifiableValueMap}. The cost
+ * of a single put or remove should not depend on the number of properties
+ * of the node.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JcrModifiableValueMapBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int propertyCount;
+
+    private BenchmarkRepository repository;
+
+    private HelperData helper;
+
+    private Node node;
+
+    private long counter;
+
+    @Setup
+    public void setUp() throws RepositoryException {
+        this.repository = new BenchmarkRepository();
+        this.helper = this.repository.createHelperData();
+        this.node = this.repository.getSession().getRootNode().addNode(BenchmarkRepository.ROOT_PATH.substring(1),
+                JcrConstants.NT_UNSTRUCTURED);
+        TreeShape.fillProperties(this.node, this.propertyCount);
+        this.repository.getSession().save();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.repository.shutdown();
+    }
+
+    @Benchmark
+    public Object put() {
+        return new JcrModifiableValueMap(this.node, this.helper).put("bench", this.counter++);
+    }
+
+    @Benchmark
+    public Object putAndRemove() {
+        final JcrModifiableValueMap valueMap = new JcrModifiableValueMap(this.node, this.helper);
+        valueMap.put("bench", this.counter++);
+        return valueMap.remove("bench");
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.util.ISO9075;
+import org.apache.jackrabbit.util.Text;
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for mapping value map keys to property names and back, once
+ * with the escaping done on every call as before and once through the
+ * name cache of {@link HelperData}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PropertyNameEscapingBenchmark {
+
+    /** Typical keys: plain names, namespaced names and names which need escaping. */
+    private static final String[] KEYS = {"title", "sling:resourceType", "jcr:title", "cq:lastModified",
+            "navTitle", "hideInNav", "foo:bar", "my key", "1column", "jcr:primaryType"};
+
+    private BenchmarkRepository repository;
+
+    private Session session;
+
+    private HelperData helper;
+
+    private String[] names;
+
+    @Setup
+    public void setUp() throws RepositoryException {
+        this.repository = new BenchmarkRepository();
+        this.session = this.repository.getSession();
+        this.helper = this.repository.createHelperData();
+        this.names = new String[KEYS.length];
+        for (int i = 0; i < KEYS.length; i++) {
+            this.names[i] = this.helper.escapeKeyName(this.session, KEYS[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.repository.shutdown();
+    }
+
+    @Benchmark
+    public void uncached(final Blackhole bh) throws RepositoryException {
+        final String[] prefixes = this.session.getNamespacePrefixes();
+        for (final String key : KEYS) {
+            bh.consume(escape(prefixes, key));
+            bh.consume(ISO9075.encodePath(key));
+        }
+        for (final String name : this.names) {
+            bh.consume(unescape(name));
+        }
+    }
+
+    @Benchmark
+    public void cached(final Blackhole bh) throws RepositoryException {
+        for (final String key : KEYS) {
+            bh.consume(this.helper.escapeKeyName(this.session, key));
+            bh.consume(this.helper.getLegacyKeyName(key));
+        }
+        for (final String name : this.names) {
+            bh.consume(this.helper.unescapeKeyName(name));
+        }
+    }
+
+    /** The key escaping as done by the value maps without the cache. */
+    private static String escape(final String[] prefixes, final String key) {
+        final int indexOfPrefix = key.indexOf(':');
+        if (indexOfPrefix > 0 && key.length() > indexOfPrefix + 1) {
+            final String prefix = key.substring(0, indexOfPrefix);
+            for (final String existingPrefix : prefixes) {
+                if (existingPrefix.equals(prefix)) {
+                    return prefix + ":" + Text.escapeIllegalJcrChars(key.substring(indexOfPrefix + 1));
+                }
+            }
+        }
+        return Text.escapeIllegalJcrChars(key);
+    }
+
+    /** The property name unescaping as done by the value maps without the cache. */
+    private static String unescape(final String name) {
+        String key = null;
+        if (name.indexOf("_x") != -1) {
+            key = ISO9075.decode(name);
+            if (key.equals(name)) {
+                key = null;
+            }
+        }
+        if (key == null) {
+            key = Text.unescapeIllegalJcrChars(name);
+        }
+        return key;
+    }
+}
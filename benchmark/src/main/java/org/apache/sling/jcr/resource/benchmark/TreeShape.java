@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.benchmark;
+
+import java.util.Calendar;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.JcrConstants;
+
+/**
+ * The content structures the benchmarks are run against.
+ */
+public enum TreeShape {
+
+    /** One parent with many children, each carrying a few properties. */
+    WIDE {
+        @Override
+        public String create(final Node root) throws RepositoryException {
+            for (int i = 0; i < WIDE_CHILDREN; i++) {
+                fillProperties(root.addNode("child-" + i, JcrConstants.NT_UNSTRUCTURED), 10);
+            }
+            return root.getPath() + "/child-" + (WIDE_CHILDREN / 2);
+        }
+    },
+
+    /** A long chain of single children. */
+    DEEP {
+        @Override
+        public String create(final Node root) throws RepositoryException {
+            Node current = root;
+            for (int i = 0; i < DEEP_LEVELS; i++) {
+                current = current.addNode("level-" + i, JcrConstants.NT_UNSTRUCTURED);
+                fillProperties(current, 10);
+            }
+            return current.getPath();
+        }
+    },
+
+    /** A single node with a large number of properties. */
+    PROPERTIES {
+        @Override
+        public String create(final Node root) throws RepositoryException {
+            final Node node = root.addNode("node", JcrConstants.NT_UNSTRUCTURED);
+            fillProperties(node, MANY_PROPERTIES);
+            return node.getPath();
+        }
+    };
+
+    public static final int WIDE_CHILDREN = 1000;
+
+    public static final int DEEP_LEVELS = 50;
+
+    public static final int MANY_PROPERTIES = 500;
+
+    /** Name of a string property present on every created node. */
+    public static final String STRING_PROPERTY = "prop-3";
+
+    /** Name of a long property present on every created node. */
+    public static final String LONG_PROPERTY = "prop-5";
+
+    /**
+     * Create the structure below the given root node.
+     * @param root The root node
+     * @return The path of the node the single node benchmarks operate on
+     * @throws RepositoryException If creating the structure fails
+     */
+    public abstract String create(final Node root) throws RepositoryException;
+
+    /**
+     * Add a mix of long, date, multi value string, string and boolean
+     * properties to the node.
+     * @param node The node
+     * @param count The number of properties
+     * @throws RepositoryException If setting a property fails
+     */
+    public static void fillProperties(final Node node, final int count) throws RepositoryException {
+        final Calendar now = Calendar.getInstance();
+        for (int i = 0; i < count; i++) {
+            final String name = "prop-" + i;
+            switch (i % 5) {
+            case 0:
+                node.setProperty(name, (long) i);
+                break;
+            case 1:
+                node.setProperty(name, now);
+                break;
+            case 2:
+                node.setProperty(name, new String[] {"a" + i, "b" + i, "c" + i});
+                break;
+            case 3:
+                node.setProperty(name, "value-" + i);
+                break;
+            default:
+                node.setProperty(name, i % 2 == 0);
+                break;
+            }
+        }
+        node.setProperty(JcrConstants.JCR_LASTMODIFIED, now);
+    }
+}
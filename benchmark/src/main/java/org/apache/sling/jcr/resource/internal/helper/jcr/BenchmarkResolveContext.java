@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import javax.jcr.Session;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.spi.resource.provider.ResolveContext;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+
+/**
+ * A resolve context directly wrapping a provider state, without
+ * a resource resolver.
+ */
+class BenchmarkResolveContext implements ResolveContext<JcrProviderState> {
+
+    private final JcrProviderState state;
+
+    BenchmarkResolveContext(final Session session, final HelperData helper) {
+        this.state = new JcrProviderState(session, helper, false, null, null, new ResolverSettings(), null, null);
+    }
+
+    @Override
+    public ResourceResolver getResourceResolver() {
+        return null;
+    }
+
+    @Override
+    public JcrProviderState getProviderState() {
+        return this.state;
+    }
+
+    @Override
+    public ResolveContext<?> getParentResolveContext() {
+        return null;
+    }
+
+    @Override
+    public ResourceProvider<?> getParentResourceProvider() {
+        return null;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.jcr.resource.benchmark.BenchmarkRepository;
+import org.apache.sling.jcr.resource.benchmark.TreeShape;
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrValueMap;
+import org.apache.sling.spi.resource.provider.ResourceContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the read path of the {@link JcrResourceProvider}: resolving
+ * a resource, listing children, reading a typed value and reading metadata.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JcrResourceProviderBenchmark {
+
+    @Param({"WIDE", "DEEP", "PROPERTIES"})
+    public TreeShape shape;
+
+    private BenchmarkRepository repository;
+
+    private JcrResourceProvider provider;
+
+    private BenchmarkResolveContext ctx;
+
+    private HelperData helper;
+
+    private String targetPath;
+
+    private Node targetNode;
+
+    private Resource parent;
+
+    @Setup
+    public void setUp() throws RepositoryException {
+        this.repository = new BenchmarkRepository();
+        this.targetPath = this.repository.createContent(this.shape);
+        this.helper = this.repository.createHelperData();
+        this.ctx = new BenchmarkResolveContext(this.repository.getSession(), this.helper);
+        this.provider = new JcrResourceProvider();
+        this.targetNode = this.repository.getSession().getNode(this.targetPath);
+        this.parent = this.provider.getResource(this.ctx, ResourceUtil.getParent(this.targetPath),
+                ResourceContext.EMPTY_CONTEXT, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.repository.shutdown();
+    }
+
+    @Benchmark
+    public Resource getResource() {
+        return this.provider.getResource(this.ctx, this.targetPath, ResourceContext.EMPTY_CONTEXT, null);
+    }
+
+    @Benchmark
+    public void listChildren(final Blackhole blackhole) {
+        final Iterator<Resource> children = this.provider.listChildren(this.ctx, this.parent);
+        while (children != null && children.hasNext()) {
+            blackhole.consume(children.next());
+        }
+    }
+
+    @Benchmark
+    public void valueMapGet(final Blackhole blackhole) {
+        final JcrValueMap valueMap = new JcrValueMap(this.targetNode, this.helper);
+        blackhole.consume(valueMap.get(TreeShape.STRING_PROPERTY, String.class));
+        blackhole.consume(valueMap.get(TreeShape.LONG_PROPERTY, Integer.class));
+    }
+
+    @Benchmark
+    public void metadataGet(final Blackhole blackhole) {
+        final JcrNodeResourceMetadata metadata = new JcrNodeResourceMetadata(this.targetNode);
+        blackhole.consume(metadata.get(ResourceMetadata.MODIFICATION_TIME));
+        blackhole.consume(metadata.get(ResourceMetadata.CONTENT_TYPE));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.jcr.resource.benchmark.BenchmarkRepository;
+import org.apache.sling.jcr.resource.benchmark.TreeShape;
+import org.apache.sling.spi.resource.provider.ResourceContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for copying a subtree of 10.000 nodes: the generic copy of the
+ * resource resolver, which creates each resource from the value map of the
+ * source, against {@link JcrResourceProvider#copy}, which clones the nodes
+ * with the session.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JcrResourceProviderCopyBenchmark {
+
+    private static final int WIDTH = 100;
+
+    private BenchmarkRepository repository;
+
+    private Session session;
+
+    private JcrResourceProvider provider;
+
+    private BenchmarkResolveContext ctx;
+
+    private String srcPath;
+
+    private String destPath;
+
+    @Setup
+    public void setUp() throws RepositoryException {
+        this.repository = new BenchmarkRepository();
+        this.session = this.repository.getSession();
+        final Node root = this.session.getRootNode().addNode(BenchmarkRepository.ROOT_PATH.substring(1),
+                JcrConstants.NT_UNSTRUCTURED);
+        final Node src = root.addNode("src", JcrConstants.NT_UNSTRUCTURED);
+        for (int i = 0; i < WIDTH; i++) {
+            final Node child = src.addNode("child-" + i, JcrConstants.NT_UNSTRUCTURED);
+            for (int j = 0; j < WIDTH - 1; j++) {
+                TreeShape.fillProperties(child.addNode("node-" + j, JcrConstants.NT_UNSTRUCTURED), 10);
+            }
+        }
+        root.addNode("dest", JcrConstants.NT_UNSTRUCTURED);
+        this.session.save();
+        this.srcPath = src.getPath();
+        this.destPath = root.getPath() + "/dest";
+        this.ctx = new BenchmarkResolveContext(this.session, this.repository.createHelperData());
+        this.provider = new JcrResourceProvider();
+    }
+
+    @TearDown(Level.Invocation)
+    public void removeCopy() throws RepositoryException {
+        this.session.refresh(false);
+        final Node dest = this.session.getNode(this.destPath);
+        if (dest.hasNode("src")) {
+            dest.getNode("src").remove();
+            this.session.save();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.repository.shutdown();
+    }
+
+    /** The copy of the resource resolver if the provider does not copy. */
+    @Benchmark
+    public void genericCopy() throws PersistenceException {
+        final Resource src = this.provider.getResource(this.ctx, this.srcPath, ResourceContext.EMPTY_CONTEXT, null);
+        this.copyResource(src, this.destPath);
+        this.provider.commit(this.ctx);
+    }
+
+    @Benchmark
+    public void providerCopy() throws PersistenceException {
+        this.provider.copy(this.ctx, this.srcPath, this.destPath);
+        this.provider.commit(this.ctx);
+    }
+
+    private void copyResource(final Resource src, final String destParent) throws PersistenceException {
+        final String path = destParent + '/' + src.getName();
+        final Map<String, Object> properties = new HashMap<String, Object>(src.getValueMap());
+        this.provider.create(this.ctx, path, properties);
+        final Iterator<Resource> children = this.provider.listChildren(this.ctx, src);
+        while (children != null && children.hasNext()) {
+            this.copyResource(children.next(), path);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.api;
+
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * The <code>BatchResourceCreator</code> creates many JCR backed resources
+ * in one call. It is obtained by adapting a resource resolver:
+ * <pre>
+ * BatchResourceCreator creator = resolver.adaptTo(BatchResourceCreator.class);
+ * creator.create(resources, 1000);
+ * </pre>
+ * The resources are created like with
+ * {@link org.apache.sling.api.resource.ResourceResolver#create(org.apache.sling.api.resource.Resource, String, Map)},
+ * but parent nodes and node types are looked up once for the whole batch
+ * and the properties are set without reading the new nodes.
+ *
+ * @since 1.1
+ */
+@ProviderType
+public interface BatchResourceCreator {
+
+    /**
+     * Create the resources in the iteration order of the map. A parent has
+     * to exist or to be created before its children.
+     * <p>
+     * If <code>saveThreshold</code> is positive, the session is saved each
+     * time this number of resources has been created, which also persists
+     * all other pending changes of the resource resolver. The remaining
+     * resources are saved with the next commit of the resource resolver.
+     * If the resource resolver uses auto-save, the auto-save threshold
+     * applies instead and <code>saveThreshold</code> is ignored.
+     *
+     * @param resources The properties of the resources by absolute path,
+     *                  the properties might be <code>null</code>
+     * @param saveThreshold The number of resources created between saves,
+     *                      <code>0</code> or negative to never save,
+     *                      ignored with auto-save
+     * @return The number of resources created
+     * @throws PersistenceException If a resource can't be created or a save
+     *         fails. Resources saved before are not removed.
+     */
+    int create(@Nonnull Map<String, Map<String, Object>> resources, int saveThreshold)
+    throws PersistenceException;
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.api;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.osgi.annotation.versioning.ConsumerType;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * The <code>BulkResourceDeleter</code> deletes large JCR backed subtrees
+ * without keeping the whole deletion in memory. It is obtained by adapting
+ * a resource resolver:
+ * <pre>
+ * BulkResourceDeleter deleter = resolver.adaptTo(BulkResourceDeleter.class);
+ * deleter.delete("/content/archive/2010", 1000, null);
+ * resolver.commit();
+ * </pre>
+ * The subtree is deleted bottom-up, saving the session each time a batch
+ * of nodes has been removed. Child nodes which are mandatory or protected
+ * are removed together with their parent.
+ *
+ * @since 1.1
+ */
+@ProviderType
+public interface BulkResourceDeleter {
+
+    /**
+     * Delete the resource at the path with all its descendants.
+     * <p>
+     * Each save persists all other pending changes of the resource resolver
+     * as well. The nodes removed after the last save are saved with the next
+     * commit of the resource resolver.
+     *
+     * @param path The absolute path of the resource
+     * @param batchSize The number of nodes removed between saves,
+     *                  <code>0</code> or negative to never save
+     * @param listener An optional listener informed about the progress
+     * @return The number of nodes removed
+     * @throws PersistenceException If the resource does not exist or can't
+     *         be deleted. Nodes removed by earlier saves are not restored.
+     */
+    long delete(@Nonnull String path, int batchSize, @Nullable ProgressListener listener)
+    throws PersistenceException;
+
+    /**
+     * Listener for the progress of a bulk delete.
+     */
+    @ConsumerType
+    interface ProgressListener {
+
+        /**
+         * Called after each save and once after the last node is removed.
+         * @param path The path of the resource being deleted
+         * @param count The number of nodes removed so far
+         */
+        void deleted(@Nonnull String path, long count);
+    }
+}
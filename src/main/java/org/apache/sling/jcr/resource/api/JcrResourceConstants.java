@@ -96,6 +96,21 @@ public class JcrResourceConstants {
      */
     public static final String AUTHENTICATION_INFO_SESSION = "user.jcr.session";
 
+    /**
+     * The name of the authentication info property enabling auto-save for
+     * the resource resolver. If enabled, the session is saved each time the
+     * number of modifications made through the resource resolver reaches the
+     * configured threshold, instead of keeping all of them in memory until
+     * {@link org.apache.sling.api.resource.ResourceResolver#commit()} is
+     * called. Modifications saved this way can't be reverted.
+     * <p>
+     * The type of this property, if present, is <code>java.lang.Boolean</code>
+     * or a <code>java.lang.String</code> with the value <code>true</code>.
+     *
+     * @since 1.1
+     */
+    public static final String AUTHENTICATION_INFO_AUTO_SAVE = "user.jcr.autosave";
+
     /**
      * Constant for the sling:Folder node type
      * @since 2.2
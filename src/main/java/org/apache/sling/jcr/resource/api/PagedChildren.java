@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.api;
+
+import java.util.Iterator;
+
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.Resource;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * The <code>PagedChildren</code> interface lists a window of the children
+ * of a JCR node resource. It is obtained by adapting a resource backed by
+ * a JCR node:
+ * <pre>
+ * PagedChildren children = resource.adaptTo(PagedChildren.class);
+ * Iterator&lt;Resource&gt; page = children.listChildren(100, 50);
+ * </pre>
+ * The skipped children are not turned into resources, which makes paging
+ * through nodes with many children considerably cheaper than skipping
+ * through {@link Resource#listChildren()}. For the same reason, the
+ * children are counted without creating resources.
+ * <p>
+ * The repository still iterates over the skipped child nodes, as JCR has
+ * no way to start a child node iteration at a position or name. The cost
+ * of a page therefore grows with its offset, deep pages of very large
+ * nodes remain expensive.
+ *
+ * @since 1.1
+ */
+@ProviderType
+public interface PagedChildren {
+
+    /**
+     * List the children of the resource, starting at the given position in
+     * the child node order. The skipped child nodes are iterated by the
+     * repository, so the cost grows with the offset.
+     *
+     * @param offset The number of children to skip, must not be negative
+     * @param limit The maximum number of children to return or a negative
+     *              value to return all remaining children
+     * @return The children, empty if the offset is beyond the last child
+     * @throws IllegalArgumentException If the offset is negative
+     */
+    @Nonnull Iterator<Resource> listChildren(long offset, long limit);
+
+    /**
+     * Count the child nodes of the resource, stopping at <code>max</code>.
+     * Children provided by other resource providers are not counted.
+     *
+     * @param max The maximum number to count to, negative for no limit
+     * @return The number of children, at most <code>max</code> if
+     *         <code>max</code> is not negative
+     */
+    long getChildCount(long max);
+}
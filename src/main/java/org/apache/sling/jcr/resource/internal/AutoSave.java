@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * Counts the modifications made through the provider with the session of
+ * a single resource resolver and saves the session once their number
+ * reaches the threshold. This bounds the transient space of large imports
+ * and deletions at the expense of the atomicity of the commit: the
+ * modifications saved automatically can't be reverted.
+ * <p>
+ * Modifications made with the session directly are not counted but are
+ * saved along with the others.
+ */
+public class AutoSave {
+
+    private final Session session;
+
+    private final int threshold;
+
+    private final AutoSaveStatistics statistics;
+
+    /** The number of modifications since the last save. */
+    private int pending;
+
+    /**
+     * Create a new instance
+     * @param session The session of the resource resolver
+     * @param threshold The number of modifications triggering a save
+     * @param statistics The statistics
+     */
+    public AutoSave(final Session session, final int threshold, final AutoSaveStatistics statistics) {
+        this.session = session;
+        this.threshold = Math.max(1, threshold);
+        this.statistics = statistics;
+        statistics.opened();
+    }
+
+    /**
+     * Get the session
+     * @return The session
+     */
+    public Session getSession() {
+        return this.session;
+    }
+
+    /**
+     * Get the number of modifications since the last save
+     * @return The number of pending modifications
+     */
+    public int getPending() {
+        return this.pending;
+    }
+
+    /**
+     * Record modifications and save the session if the threshold is reached.
+     * @param count The number of modifications
+     * @throws RepositoryException If the save fails
+     */
+    public void modified(final int count) throws RepositoryException {
+        this.pending += count;
+        if ( this.pending >= this.threshold ) {
+            this.save(true);
+        }
+    }
+
+    /**
+     * Save the session on commit.
+     * @throws RepositoryException If the save fails
+     */
+    public void save() throws RepositoryException {
+        this.save(false);
+    }
+
+    /**
+     * The pending modifications have been reverted.
+     */
+    public void reverted() {
+        this.pending = 0;
+    }
+
+    /**
+     * The resource resolver has been closed.
+     */
+    public void close() {
+        this.statistics.closed();
+    }
+
+    private void save(final boolean auto) throws RepositoryException {
+        final long start = System.nanoTime();
+        this.session.save();
+        this.statistics.saved(this.pending, System.nanoTime() - start, auto);
+        this.pending = 0;
+    }
+}
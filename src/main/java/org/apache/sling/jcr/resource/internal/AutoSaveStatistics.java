@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and timers of the {@link AutoSave} instances of a provider.
+ */
+public class AutoSaveStatistics implements AutoSaveStatisticsMBean {
+
+    private volatile int threshold;
+
+    private final AtomicLong activeResolvers = new AtomicLong();
+
+    private final AtomicLong autoSaves = new AtomicLong();
+
+    private final AtomicLong commits = new AtomicLong();
+
+    private final AtomicLong modificationsSaved = new AtomicLong();
+
+    private final AtomicLong maxTransientSize = new AtomicLong();
+
+    private final AtomicLong saveNanos = new AtomicLong();
+
+    private final AtomicLong maxSaveNanos = new AtomicLong();
+
+    /**
+     * Set the threshold for new resource resolvers
+     * @param threshold The number of pending modifications triggering a save,
+     *                  0 disables auto-save
+     */
+    public void setAutoSaveThreshold(final int threshold) {
+        this.threshold = Math.max(0, threshold);
+    }
+
+    void opened() {
+        this.activeResolvers.incrementAndGet();
+    }
+
+    void closed() {
+        this.activeResolvers.decrementAndGet();
+    }
+
+    void saved(final int modifications, final long nanos, final boolean auto) {
+        if ( auto ) {
+            this.autoSaves.incrementAndGet();
+        } else {
+            this.commits.incrementAndGet();
+        }
+        this.modificationsSaved.addAndGet(modifications);
+        this.saveNanos.addAndGet(nanos);
+        setMax(this.maxTransientSize, modifications);
+        setMax(this.maxSaveNanos, nanos);
+    }
+
+    private static void setMax(final AtomicLong max, final long value) {
+        long current = max.get();
+        while ( value > current && !max.compareAndSet(current, value) ) {
+            current = max.get();
+        }
+    }
+
+    @Override
+    public int getAutoSaveThreshold() {
+        return this.threshold;
+    }
+
+    @Override
+    public long getActiveResolvers() {
+        return this.activeResolvers.get();
+    }
+
+    @Override
+    public long getAutoSaves() {
+        return this.autoSaves.get();
+    }
+
+    @Override
+    public long getCommits() {
+        return this.commits.get();
+    }
+
+    @Override
+    public long getModificationsSaved() {
+        return this.modificationsSaved.get();
+    }
+
+    @Override
+    public long getMaxTransientSize() {
+        return this.maxTransientSize.get();
+    }
+
+    @Override
+    public long getSaveTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.saveNanos.get());
+    }
+
+    @Override
+    public long getMaxSaveTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxSaveNanos.get());
+    }
+}
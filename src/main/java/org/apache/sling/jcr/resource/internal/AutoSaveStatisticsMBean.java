@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+/**
+ * Statistics of the sessions saved automatically for resource resolvers
+ * with auto-save enabled.
+ */
+public interface AutoSaveStatisticsMBean {
+
+    /** @return The number of pending modifications triggering a save */
+    int getAutoSaveThreshold();
+
+    /** @return The number of open resource resolvers with auto-save enabled */
+    long getActiveResolvers();
+
+    /** @return The number of saves triggered by the threshold */
+    long getAutoSaves();
+
+    /** @return The number of saves on commit of the resource resolver */
+    long getCommits();
+
+    /** @return The number of modifications saved by all saves */
+    long getModificationsSaved();
+
+    /** @return The highest number of modifications saved at once */
+    long getMaxTransientSize();
+
+    /** @return The time in milliseconds spent saving */
+    long getSaveTime();
+
+    /** @return The longest time in milliseconds spent in a single save */
+    long getMaxSaveTime();
+}
@@ -18,38 +18,260 @@
  */
 package org.apache.sling.jcr.resource.internal;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import org.apache.jackrabbit.util.ISO9075;
+import org.apache.jackrabbit.util.Text;
 import org.apache.sling.api.resource.external.URIProvider;
 import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 
 /**
  * This is a helper class used to pass several services/data to the resource
  * and value map implementations.
+ * <p>
+ * A single instance is shared by all resource resolvers of a provider. The
+ * namespace prefixes are read once from the first session asking for them
+ * and kept until {@link #resetNamespacePrefixes()} is called on a namespace
+ * registration. As the prefixes are shared, prefixes remapped locally with
+ * {@code Session.setNamespacePrefix} are not taken into account when
+ * escaping keys; the globally registered prefixes are used.
+ * <p>
+ * The mapping between value map keys and property names is cached as the
+ * same few property names are used over and over. Names which only contain
+ * characters which are never escaped are not cached but returned as is.
  */
 public class HelperData {
 
     private static final URIProvider[] EMPTY_URLPROVIDERS = new URIProvider[0];
 
+    /** The maximum number of entries of each name cache. If reached, the cache is cleared. */
+    static final int NAME_CACHE_SIZE = 10000;
+
     private final AtomicReference<DynamicClassLoaderManager> dynamicClassLoaderManagerReference;
     private final AtomicReference<URIProvider[]> uriProviderReference;
 
-    private volatile String[] namespacePrefixes;
+    /**
+     * The namespace prefixes and the key names escaped with them. Each reset
+     * sets a new instance without prefixes, so prefixes read before a reset
+     * are never published after it.
+     */
+    private final AtomicReference<Namespaces> namespaces = new AtomicReference<Namespaces>(new Namespaces(null));
+
+    /** Key to the property name with the old ISO9075 path encoding. */
+    private final ConcurrentHashMap<String, String> legacyNames = new ConcurrentHashMap<String, String>();
+
+    /** Property name to key. */
+    private final ConcurrentHashMap<String, String> keys = new ConcurrentHashMap<String, String>();
+
+    private volatile boolean prefetchChildren;
+
+    /** The keys of the properties to prefetch, {@code null} for all properties. */
+    private volatile String[] prefetchKeys;
+
+    private volatile int queryCacheSize;
 
     public HelperData(final AtomicReference<DynamicClassLoaderManager> dynamicClassLoaderManagerReference, AtomicReference<URIProvider[]> uriProviderReference) {
         this.dynamicClassLoaderManagerReference = dynamicClassLoaderManagerReference;
         this.uriProviderReference = uriProviderReference;
     }
 
-    public String[] getNamespacePrefixes(final Session session)
+    /**
+     * Check whether the prefix is a registered namespace prefix
+     * @param session The session used to read the prefixes if not cached yet
+     * @param prefix The prefix
+     * @return {@code true} if the prefix is registered
+     * @throws RepositoryException If the prefixes can't be read
+     */
+    public boolean isNamespacePrefix(final Session session, final String prefix)
     throws RepositoryException {
-        if ( this.namespacePrefixes == null ) {
-            this.namespacePrefixes = session.getNamespacePrefixes();
+        return this.getNamespaces(session).prefixes.contains(prefix);
+    }
+
+    /**
+     * Drop the cached namespace prefixes, they are read again on next access.
+     * This drops the escaped key names as well.
+     */
+    public void resetNamespacePrefixes() {
+        this.namespaces.set(new Namespaces(null));
+    }
+
+    private Namespaces getNamespaces(final Session session) throws RepositoryException {
+        final Namespaces current = this.namespaces.get();
+        if ( current.prefixes != null ) {
+            return current;
+        }
+        final Namespaces result = new Namespaces(session.getNamespacePrefixes());
+        // fails if the prefixes have been reset in the meantime
+        this.namespaces.compareAndSet(current, result);
+        return result;
+    }
+
+    /**
+     * Escape a value map key to a property name, taking into consideration
+     * if it contains a registered prefix
+     * @param session The session used to read the prefixes if not cached yet
+     * @param key The key
+     * @return The property name
+     * @throws RepositoryException If the prefixes can't be read
+     */
+    public String escapeKeyName(final Session session, final String key)
+    throws RepositoryException {
+        if ( isPlainName(key) ) {
+            return key;
+        }
+        final Namespaces ns = this.getNamespaces(session);
+        String name = ns.escapedNames.get(key);
+        if ( name == null ) {
+            final int indexOfPrefix = key.indexOf(':');
+            // check if colon is neither the first nor the last character
+            if (indexOfPrefix > 0 && key.length() > indexOfPrefix + 1) {
+                final String prefix = key.substring(0, indexOfPrefix);
+                if (ns.prefixes.contains(prefix)) {
+                    name = prefix
+                            + ":"
+                            + Text.escapeIllegalJcrChars(key
+                                    .substring(indexOfPrefix + 1));
+                }
+            }
+            if ( name == null ) {
+                name = Text.escapeIllegalJcrChars(key);
+            }
+            put(ns.escapedNames, key, name);
+        }
+        return name;
+    }
+
+    /**
+     * Get the property name for a key with the (wrong) ISO9075 path encoding
+     * used by older versions.
+     * @param key The key
+     * @return The property name
+     */
+    public String getLegacyKeyName(final String key) {
+        if ( isPlainName(key) ) {
+            return key;
+        }
+        String name = this.legacyNames.get(key);
+        if ( name == null ) {
+            name = ISO9075.encodePath(key);
+            put(this.legacyNames, key, name);
+        }
+        return name;
+    }
+
+    /**
+     * Get the value map key for a property name.
+     * @param name The property name
+     * @return The key
+     */
+    public String unescapeKeyName(final String name) {
+        if ( name.indexOf('%') == -1 && name.indexOf("_x") == -1 ) {
+            return name;
+        }
+        String key = this.keys.get(name);
+        if ( key == null ) {
+            if ( name.indexOf("_x") != -1 ) {
+                // for compatibility with older versions we use the (wrong)
+                // ISO9075 path encoding
+                key = ISO9075.decode(name);
+                if ( key.equals(name) ) {
+                    key = null;
+                }
+            }
+            if ( key == null ) {
+                key = Text.unescapeIllegalJcrChars(name);
+            }
+            put(this.keys, name, key);
         }
-        return this.namespacePrefixes;
+        return key;
+    }
+
+    /**
+     * Check whether the name is the same as key, escaped property name and
+     * ISO9075 encoded name: it must start with a letter or an underscore
+     * and only contain letters, digits, underscores and hyphens, but not
+     * the ISO9075 escape sequence start <code>_x</code>.
+     */
+    static boolean isPlainName(final String name) {
+        final int length = name.length();
+        if ( length == 0 ) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            final char c = name.charAt(i);
+            if ( (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') ) {
+                continue;
+            }
+            if ( c == '_' ) {
+                if ( i + 1 < length && name.charAt(i + 1) == 'x' ) {
+                    return false;
+                }
+                continue;
+            }
+            if ( i > 0 && ((c >= '0' && c <= '9') || c == '-') ) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static void put(final ConcurrentHashMap<String, String> cache, final String key, final String value) {
+        if ( cache.size() >= NAME_CACHE_SIZE ) {
+            cache.clear();
+        }
+        cache.put(key, value);
+    }
+
+    /**
+     * Configure the prefetching of the properties of listed child resources
+     * @param enabled Whether prefetching is enabled
+     * @param keys The keys of the properties to prefetch. If {@code null}
+     *             or empty, all properties are prefetched.
+     */
+    public void setChildPrefetch(final boolean enabled, final String[] keys) {
+        this.prefetchKeys = keys == null || keys.length == 0 ? null : keys.clone();
+        this.prefetchChildren = enabled;
+    }
+
+    /**
+     * Whether the properties of listed child resources are prefetched
+     * @return {@code true} if enabled
+     */
+    public boolean isChildPrefetch() {
+        return this.prefetchChildren;
+    }
+
+    /**
+     * The keys of the properties to prefetch for listed child resources
+     * @return The keys or {@code null} for all properties
+     */
+    public String[] getChildPrefetchKeys() {
+        return this.prefetchKeys;
+    }
+
+    /**
+     * Configure the number of prepared queries cached per resource resolver
+     * @param size The maximum number of queries, 0 disables the cache
+     */
+    public void setQueryCacheSize(final int size) {
+        this.queryCacheSize = Math.max(0, size);
+    }
+
+    /**
+     * The number of prepared queries cached per resource resolver
+     * @return The maximum number of queries, 0 if disabled
+     */
+    public int getQueryCacheSize() {
+        return this.queryCacheSize;
     }
 
     public ClassLoader getDynamicClassLoader() {
@@ -67,4 +289,22 @@ public class HelperData {
         }
         return ups;
     }
+
+    /**
+     * The namespace prefixes together with the key names escaped based on them.
+     */
+    private static final class Namespaces {
+
+        final Set<String> prefixes;
+
+        final ConcurrentHashMap<String, String> escapedNames = new ConcurrentHashMap<String, String>();
+
+        /**
+         * @param prefixes The prefixes, {@code null} if not read yet
+         */
+        Namespaces(final String[] prefixes) {
+            this.prefixes = prefixes == null ? null
+                    : Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(prefixes)));
+        }
+    }
 }
@@ -20,6 +20,9 @@ package org.apache.sling.jcr.resource.internal;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.jcr.RepositoryException;
@@ -32,6 +35,7 @@ import org.apache.jackrabbit.api.observation.JackrabbitEventFilter;
 import org.apache.jackrabbit.api.observation.JackrabbitObservationManager;
 import org.apache.jackrabbit.oak.jcr.observation.filter.FilterFactory;
 import org.apache.jackrabbit.oak.jcr.observation.filter.OakEventFilter;
+import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
 import org.apache.sling.api.resource.path.Path;
 import org.apache.sling.jcr.api.SlingRepository;
@@ -52,25 +56,105 @@ public class JcrListenerBaseConfig implements Closeable {
 
     private final ObservationReporter reporter;
 
-    @SuppressWarnings("deprecation")
+    /** Optional asynchronous dispatcher for the changes. */
+    private final ObservationDispatcher dispatcher;
+
+    private final ObservationStatistics statistics;
+
     public JcrListenerBaseConfig(
                     final ObservationReporter reporter,
                     final SlingRepository repository)
+    throws RepositoryException {
+        this(reporter, repository, 0, 0);
+    }
+
+    /**
+     * Create a new configuration
+     * @param reporter The observation reporter
+     * @param repository The repository
+     * @param asyncWindow The time in milliseconds changes are collected before they are reported
+     * @param asyncQueueSize The maximum number of pending changes. If this is
+     *                       <code>0</code>, changes are reported synchronously.
+     * @throws RepositoryException If the login fails
+     */
+    public JcrListenerBaseConfig(
+                    final ObservationReporter reporter,
+                    final SlingRepository repository,
+                    final long asyncWindow,
+                    final int asyncQueueSize)
+    throws RepositoryException {
+        this(reporter, repository, asyncWindow, asyncQueueSize, new ObservationStatistics());
+    }
+
+    /**
+     * Create a new configuration
+     * @param reporter The observation reporter
+     * @param repository The repository
+     * @param asyncWindow The time in milliseconds changes are collected before they are reported
+     * @param asyncQueueSize The maximum number of pending changes. If this is
+     *                       <code>0</code>, changes are reported synchronously.
+     * @param statistics The statistics to record the observation costs
+     * @throws RepositoryException If the login fails
+     */
+    @SuppressWarnings("deprecation")
+    public JcrListenerBaseConfig(
+                    final ObservationReporter reporter,
+                    final SlingRepository repository,
+                    final long asyncWindow,
+                    final int asyncQueueSize,
+                    final ObservationStatistics statistics)
     throws RepositoryException {
         this.reporter = reporter;
+        this.statistics = statistics;
         // The session should have read access on the whole repository
         this.session = repository.loginService("observation", repository.getDefaultWorkspace());
+        this.dispatcher = asyncQueueSize > 0 ? new ObservationDispatcher(reporter, asyncWindow, asyncQueueSize, statistics) : null;
+        this.statistics.setDispatcher(this.dispatcher);
     }
 
     /**
      * Dispose this config
-     * Close session.
+     * Stop the dispatcher and close session.
      */
     @Override
     public void close() throws IOException {
+        if ( this.dispatcher != null ) {
+            this.dispatcher.close();
+            this.statistics.setDispatcher(null);
+        }
         this.session.logout();
     }
 
+    /**
+     * Report the changes for a configuration, either directly or
+     * through the asynchronous dispatcher.
+     * @param config The observer configuration
+     * @param changes The changes
+     */
+    public void report(final ObserverConfiguration config, final List<ResourceChange> changes) {
+        if ( this.dispatcher != null ) {
+            this.dispatcher.submit(config, changes);
+        } else {
+            this.statistics.report(this.reporter, config, changes);
+        }
+    }
+
+    /**
+     * The observation statistics
+     * @return The statistics
+     */
+    public ObservationStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * The asynchronous dispatcher
+     * @return The dispatcher or {@code null} if changes are reported synchronously.
+     */
+    public ObservationDispatcher getDispatcher() {
+        return this.dispatcher;
+    }
+
     /**
      * Register a JCR event listener
      * @param listener The listener
@@ -78,12 +162,46 @@ public class JcrListenerBaseConfig implements Closeable {
      * @throws RepositoryException If registration fails.
      */
     public void register(final EventListener listener, final ObserverConfiguration config)
+    throws RepositoryException {
+        this.register(listener,
+                config.getPaths().toStringSet(),
+                config.getExcludedPaths().toStringSet(),
+                config.includeExternal(),
+                this.getTypes(config));
+    }
+
+    /**
+     * Register a single JCR event listener for several configurations.
+     * The listener receives the events for the union of all paths, change
+     * types and external flags. Excluded paths are not applied to the filter,
+     * the listener has to filter the events per configuration.
+     * @param listener The listener
+     * @param configs The configurations
+     * @throws RepositoryException If registration fails.
+     */
+    public void register(final EventListener listener, final List<ObserverConfiguration> configs)
+    throws RepositoryException {
+        final Set<String> paths = new HashSet<String>();
+        boolean includeExternal = false;
+        int types = 0;
+        for(final ObserverConfiguration config : configs) {
+            paths.addAll(config.getPaths().toStringSet());
+            includeExternal |= config.includeExternal();
+            types |= this.getTypes(config);
+        }
+        this.register(listener, paths, Collections.<String>emptySet(), includeExternal, types);
+    }
+
+    private void register(final EventListener listener,
+            final Set<String> paths,
+            final Set<String> excludePaths,
+            final boolean includeExternal,
+            final int types)
     throws RepositoryException {
         final ObservationManager mgr = this.session.getWorkspace().getObservationManager();
         if ( mgr instanceof JackrabbitObservationManager ) {
             final OakEventFilter filter = FilterFactory.wrap(new JackrabbitEventFilter());
             // paths
-            final Set<String> paths = config.getPaths().toStringSet();
             int globCount = 0, pathCount = 0;
             for(final String p : paths) {
                 if ( p.startsWith(Path.GLOB_PREFIX )) {
@@ -116,16 +234,15 @@ public class JcrListenerBaseConfig implements Closeable {
             filter.setIsDeep(true);
 
             // exclude paths
-            final Set<String> excludePaths = config.getExcludedPaths().toStringSet();
             if ( !excludePaths.isEmpty() ) {
                 filter.setExcludedPaths(excludePaths.toArray(new String[excludePaths.size()]));
             }
 
             // external
-            filter.setNoExternal(!config.includeExternal());
+            filter.setNoExternal(!includeExternal);
 
             // types
-            filter.setEventTypes(this.getTypes(config));
+            filter.setEventTypes(types);
 
             // nt:file handling
             filter.withNodeTypeAggregate(new String[] {"nt:file"}, new String[] {"", "jcr:content"});
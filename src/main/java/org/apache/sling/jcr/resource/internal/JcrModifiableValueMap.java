@@ -53,25 +53,38 @@ public final class JcrModifiableValueMap
     /** A cache for the properties. */
     private final Map<String, JcrPropertyMapCacheEntry> cache;
 
-    /** A cache for the values. */
-    private final Map<String, Object> valueCache;
-
     /** Has the node been read completely? */
     private boolean fullyRead;
 
+    /** The property values of the fully read cache, reset whenever the cache changes. */
+    private Map<String, Object> values;
+
     private final HelperData helper;
 
+    /** The optional listener informed about changed properties. */
+    private final ChangeListener listener;
+
     /**
      * Constructor
      * @param node The underlying node.
      * @param helper Helper data object
      */
     public JcrModifiableValueMap(final Node node, final HelperData helper) {
+        this(node, helper, null);
+    }
+
+    /**
+     * Constructor
+     * @param node The underlying node.
+     * @param helper Helper data object
+     * @param listener The listener informed about changed properties, might be <code>null</code>
+     */
+    public JcrModifiableValueMap(final Node node, final HelperData helper, final ChangeListener listener) {
         this.node = node;
         this.cache = new LinkedHashMap<String, JcrPropertyMapCacheEntry>();
-        this.valueCache = new LinkedHashMap<String, Object>();
         this.fullyRead = false;
         this.helper = helper;
+        this.listener = listener;
     }
 
     // ---------- ValueMap
@@ -154,7 +167,7 @@ public final class JcrModifiableValueMap
     @Override
     public boolean containsValue(final Object value) {
         readFully();
-        return valueCache.containsValue(value);
+        return getValues().containsValue(value);
     }
 
     /**
@@ -180,13 +193,7 @@ public final class JcrModifiableValueMap
     @Override
     public Set<java.util.Map.Entry<String, Object>> entrySet() {
         readFully();
-        final Map<String, Object> sourceMap;
-        if (cache.size() == valueCache.size()) {
-            sourceMap = valueCache;
-        } else {
-            sourceMap = transformEntries(cache);
-        }
-        return Collections.unmodifiableSet(sourceMap.entrySet());
+        return getValues().entrySet();
     }
 
     /**
@@ -204,13 +211,7 @@ public final class JcrModifiableValueMap
     @Override
     public Collection<Object> values() {
         readFully();
-        final Map<String, Object> sourceMap;
-        if (cache.size() == valueCache.size()) {
-            sourceMap = valueCache;
-        } else {
-            sourceMap = transformEntries(cache);
-        }
-        return Collections.unmodifiableCollection(sourceMap.values());
+        return getValues().values();
     }
 
     /**
@@ -238,28 +239,12 @@ public final class JcrModifiableValueMap
     private JcrPropertyMapCacheEntry cacheProperty(final Property prop) {
         try {
             // calculate the key
-            final String name = prop.getName();
-            String key = null;
-            if ( name.indexOf("_x") != -1 ) {
-                // for compatibility with older versions we use the (wrong)
-                // ISO9075 path encoding
-                key = ISO9075.decode(name);
-                if ( key.equals(name) ) {
-                    key = null;
-                }
-            }
-            if ( key == null ) {
-                key = Text.unescapeIllegalJcrChars(name);
-            }
+            final String key = this.helper.unescapeKeyName(prop.getName());
             JcrPropertyMapCacheEntry entry = cache.get(key);
             if ( entry == null ) {
                 entry = new JcrPropertyMapCacheEntry(prop);
                 cache.put(key, entry);
-
-                final Object defaultValue = entry.getPropertyValue();
-                if (defaultValue != null) {
-                    valueCache.put(key, entry.getPropertyValue());
-                }
+                values = null;
             }
             return entry;
         } catch (final RepositoryException re) {
@@ -336,7 +321,7 @@ public final class JcrModifiableValueMap
         try {
             // for compatibility with older versions we use the (wrong) ISO9075 path
             // encoding
-            final String oldKey = ISO9075.encodePath(name);
+            final String oldKey = this.helper.getLegacyKeyName(name);
             if (node.hasProperty(oldKey)) {
                 final Property prop = node.getProperty(oldKey);
                 return cacheProperty(prop);
@@ -358,20 +343,7 @@ public final class JcrModifiableValueMap
      * @throws RepositoryException if the repository's namespace prefixes cannot be retrieved
      */
     protected String escapeKeyName(final String key) throws RepositoryException {
-        final int indexOfPrefix = key.indexOf(':');
-        // check if colon is neither the first nor the last character
-        if (indexOfPrefix > 0 && key.length() > indexOfPrefix + 1) {
-            final String prefix = key.substring(0, indexOfPrefix);
-            for (final String existingPrefix : this.helper.getNamespacePrefixes(this.node.getSession())) {
-                if (existingPrefix.equals(prefix)) {
-                    return prefix
-                            + ":"
-                            + Text.escapeIllegalJcrChars(key
-                                    .substring(indexOfPrefix + 1));
-                }
-            }
-        }
-        return Text.escapeIllegalJcrChars(key);
+        return this.helper.escapeKeyName(this.node.getSession(), key);
     }
 
     /**
@@ -408,13 +380,17 @@ public final class JcrModifiableValueMap
         return type;
     }
 
-    private Map<String, Object> transformEntries(final Map<String, JcrPropertyMapCacheEntry> map) {
-
-        final Map<String, Object> transformedEntries = new LinkedHashMap<String, Object>(map.size());
-        for ( final Map.Entry<String, JcrPropertyMapCacheEntry> entry : map.entrySet() )
-            transformedEntries.put(entry.getKey(), entry.getValue().getPropertyValueOrNull());
-
-        return transformedEntries;
+    /**
+     * Get the values of all properties, the cache must have been read fully.
+     */
+    private Map<String, Object> getValues() {
+        if (this.values == null) {
+            final Map<String, Object> transformedEntries = new LinkedHashMap<String, Object>(cache.size());
+            for ( final Map.Entry<String, JcrPropertyMapCacheEntry> entry : cache.entrySet() )
+                transformedEntries.put(entry.getKey(), entry.getValue().getPropertyValueOrNull());
+            this.values = Collections.unmodifiableMap(transformedEntries);
+        }
+        return this.values;
     }
 
     // ---------- Map
@@ -432,6 +408,27 @@ public final class JcrModifiableValueMap
      */
     @Override
     public Object put(final String aKey, final Object value) {
+        final String key = checkPutKey(aKey, value);
+        // only the affected property is read, not the whole node
+        final Object oldValue = this.get(key);
+        this.modified(this.write(key, value));
+        return oldValue;
+    }
+
+    /**
+     * Set a property of a newly created node. Unlike {@link #put(String, Object)}
+     * the previous value is not read, as there is none, and the modification
+     * is neither counted for auto-save nor reported to the listener, which
+     * is up to the creator of the node.
+     * @param aKey The key
+     * @param value The value
+     * @throws IllegalArgumentException If the value can't be set
+     */
+    public void putNew(final String aKey, final Object value) {
+        this.write(checkPutKey(aKey, value), value);
+    }
+
+    private String checkPutKey(final String aKey, final Object value) {
         final String key = checkKey(aKey);
         if ( key.indexOf('/') != -1 ) {
             throw new IllegalArgumentException("Invalid key: " + key);
@@ -439,11 +436,18 @@ public final class JcrModifiableValueMap
         if ( value == null ) {
             throw new NullPointerException("Value should not be null (key = " + key + ")");
         }
-        readFully();
-        final Object oldValue = this.get(key);
+        return key;
+    }
+
+    /**
+     * Write the property
+     * @return The property name
+     */
+    private String write(final String key, final Object value) {
         try {
             final JcrPropertyMapCacheEntry entry = new JcrPropertyMapCacheEntry(value, this.node);
             this.cache.put(key, entry);
+            this.values = null;
             final String name = escapeKeyName(key);
             if ( NodeUtil.MIXIN_TYPES.equals(name) ) {
                 NodeUtil.handleMixinTypes(node, entry.convertToType(String[].class, node, this.helper.getDynamicClassLoader()));
@@ -454,12 +458,10 @@ public final class JcrModifiableValueMap
             } else {
                 node.setProperty(name, entry.convertToType(Value.class, node, this.helper.getDynamicClassLoader()));
             }
+            return name;
         } catch (final RepositoryException re) {
             throw new IllegalArgumentException("Value for key " + key + " can't be put into node: " + value, re);
         }
-        this.valueCache.put(key, value);
-
-        return oldValue;
     }
 
     /**
@@ -483,18 +485,52 @@ public final class JcrModifiableValueMap
     @Override
     public Object remove(final Object aKey) {
         final String key = checkKey(aKey.toString());
-        readFully();
+        final JcrPropertyMapCacheEntry oldEntry = this.read(key);
+        final Object oldValue = (oldEntry == null ? null : oldEntry.getPropertyValueOrNull());
         this.cache.remove(key);
-        final Object oldValue = this.valueCache.remove(key);
+        this.values = null;
+        final String name;
         try {
-            final String name = escapeKeyName(key);
+            name = escapeKeyName(key);
             if ( node.hasProperty(name) ) {
                 node.getProperty(name).remove();
             }
         } catch (final RepositoryException re) {
             throw new IllegalArgumentException("Value for key " + key + " can't be removed from node.", re);
         }
+        this.modified(name);
 
         return oldValue;
     }
+
+    /**
+     * Inform the listener, which might save the session if auto-save is
+     * enabled for the resource resolver.
+     * @param name The name of the changed property
+     * @throws IllegalArgumentException if the session can't be saved
+     */
+    private void modified(final String name) {
+        try {
+            if ( this.listener != null ) {
+                this.listener.changed(this.node, name);
+            }
+        } catch (final RepositoryException re) {
+            throw new IllegalArgumentException("Unable to save pending changes.", re);
+        }
+    }
+
+    /**
+     * Listener informed about the properties set or removed through a
+     * modifiable value map.
+     */
+    public interface ChangeListener {
+
+        /**
+         * A property has been set or removed.
+         * @param node The node of the property
+         * @param name The name of the property
+         * @throws RepositoryException If the change can't be processed
+         */
+        void changed(Node node, String name) throws RepositoryException;
+    }
 }
@@ -28,6 +28,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +52,12 @@ public class JcrResourceListener implements EventListener, Closeable {
 
     private volatile ObserverConfiguration config;
 
+    /** The matcher if this listener is registered for several configurations. */
+    private volatile ObserverConfigurationMatcher matcher;
+
+    /** The JCR listener registered for several configurations. */
+    private volatile Registration registration;
+
     private final JcrListenerBaseConfig baseConfig;
 
     public JcrResourceListener(final JcrListenerBaseConfig listenerConfig,
@@ -61,6 +68,23 @@ public class JcrResourceListener implements EventListener, Closeable {
         this.baseConfig.register(this, config);
     }
 
+    /**
+     * Create a single listener for several configurations. Each change
+     * is only reported to the configurations it matches.
+     *
+     * @param listenerConfig The base configuration
+     * @param configs The observation configurations
+     * @throws RepositoryException If registration fails.
+     */
+    public JcrResourceListener(final JcrListenerBaseConfig listenerConfig,
+                    final List<ObserverConfiguration> configs)
+    throws RepositoryException {
+        this.baseConfig = listenerConfig;
+        this.matcher = new ObserverConfigurationMatcher(configs);
+        this.registration = new Registration();
+        this.baseConfig.register(this.registration, configs);
+    }
+
     /**
      * Update the observation configuration.
      *
@@ -70,9 +94,30 @@ public class JcrResourceListener implements EventListener, Closeable {
         this.config = cfg;
     }
 
+    /**
+     * Update the observation configurations of a listener registered for
+     * several configurations. A JCR listener for the union of the new
+     * configurations is registered before the previous one is removed, so
+     * no change is lost. Changes happening while both are registered
+     * might be reported twice.
+     *
+     * @param configs The updated configurations
+     * @throws RepositoryException If registration fails.
+     */
+    public void update(final List<ObserverConfiguration> configs)
+    throws RepositoryException {
+        final Registration old = this.registration;
+        final Registration reg = new Registration();
+        this.matcher = new ObserverConfigurationMatcher(configs);
+        this.baseConfig.register(reg, configs);
+        this.registration = reg;
+        this.baseConfig.unregister(old);
+    }
+
     /**
      * Get the observation configuration
-     * @return The observation configuration
+     * @return The observation configuration or {@code null} if this listener
+     *         is registered for several configurations
      */
     public ObserverConfiguration getConfig() {
         return this.config;
@@ -84,7 +129,8 @@ public class JcrResourceListener implements EventListener, Closeable {
     @Override
     public void close() throws IOException {
         // unregister from observations
-        this.baseConfig.unregister(this);
+        final Registration reg = this.registration;
+        this.baseConfig.unregister(reg == null ? this : reg);
     }
 
     /**
@@ -92,12 +138,15 @@ public class JcrResourceListener implements EventListener, Closeable {
      */
     @Override
     public void onEvent(final EventIterator events) {
+        final long start = System.nanoTime();
+        long eventCount = 0;
         final Map<String, ResourceChange> addedEvents = new HashMap<String, ResourceChange>();
         final Map<String, ResourceChange> changedEvents = new HashMap<String, ResourceChange>();
         final Map<String, ResourceChange> removedEvents = new HashMap<String, ResourceChange>();
 
         while ( events.hasNext() ) {
             final Event event = events.nextEvent();
+            eventCount++;
 
             final String identifier;
             final String path;
@@ -152,8 +201,38 @@ public class JcrResourceListener implements EventListener, Closeable {
         changes.addAll(addedEvents.values());
         changes.addAll(removedEvents.values());
         changes.addAll(changedEvents.values());
-        this.baseConfig.getReporter().reportChanges(this.config, changes, false);
 
+        final ObserverConfigurationMatcher m = this.matcher;
+        final ObserverConfiguration c = this.config;
+        try {
+            if ( m == null ) {
+                this.baseConfig.report(c, changes);
+            } else {
+                this.dispatch(m, changes);
+            }
+        } finally {
+            this.baseConfig.getStatistics().eventsProcessed(m == null ? c : null, eventCount, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Report each change to the configurations it matches.
+     */
+    private void dispatch(final ObserverConfigurationMatcher m, final List<ResourceChange> changes) {
+        final Map<ObserverConfiguration, List<ResourceChange>> changesPerConfig = new LinkedHashMap<ObserverConfiguration, List<ResourceChange>>();
+        for(final ResourceChange change : changes) {
+            for(final ObserverConfiguration c : m.match(change)) {
+                List<ResourceChange> list = changesPerConfig.get(c);
+                if ( list == null ) {
+                    list = new ArrayList<ResourceChange>();
+                    changesPerConfig.put(c, list);
+                }
+                list.add(change);
+            }
+        }
+        for(final Map.Entry<ObserverConfiguration, List<ResourceChange>> entry : changesPerConfig.entrySet()) {
+            this.baseConfig.report(entry.getKey(), entry.getValue());
+        }
     }
 
     private ResourceChange createResourceChange(final Event event,
@@ -178,8 +257,20 @@ public class JcrResourceListener implements EventListener, Closeable {
         return false;
     }
 
+    /**
+     * The JCR listener registered for several configurations. A new one is
+     * registered for each update.
+     */
+    private final class Registration implements EventListener {
+
+        @Override
+        public void onEvent(final EventIterator events) {
+            JcrResourceListener.this.onEvent(events);
+        }
+    }
+
     @Override
     public String toString() {
-        return "JcrResourceListener [" + config + "]";
+        return "JcrResourceListener [" + (matcher == null ? config : "combined") + "]";
     }
 }
@@ -20,10 +20,14 @@ import java.lang.reflect.Method;
 import java.security.Principal;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
 
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.user.Authorizable;
@@ -35,6 +39,7 @@ import org.apache.sling.serviceusermapping.ServiceUserValidator;
 import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
@@ -48,6 +53,9 @@ import org.slf4j.LoggerFactory;
  * interfaces that verifies that all registered service users/principals are represented by
  * {@link org.apache.jackrabbit.api.security.user.User#isSystemUser() system users}
  * in the underlying JCR repository.
+ * <p>
+ * Positive and negative results are cached for a limited time. The cache
+ * is cleared whenever an authorizable below the system user path changes.
  *
  * @see org.apache.jackrabbit.api.security.user.User#isSystemUser()
  */
@@ -68,7 +76,26 @@ public class JcrSystemUserValidator implements ServiceUserValidator, ServicePrin
         @AttributeDefinition(name = "Allow only JCR System Users",
                 description="If set to true, only user IDs bound to JCR system users are allowed in the user mappings of the 'Sling Service User Mapper Service'. Otherwise all users are allowed!")
         boolean allow_only_system_user() default true;
+
+        @AttributeDefinition(name = "Valid User Cache Time",
+                description = "Time in seconds a user or principal validated as system user is cached.")
+        int cache_ttl() default 3600;
+
+        @AttributeDefinition(name = "Invalid User Cache Time",
+                description = "Time in seconds a user or principal found not to be a system user is cached.")
+        int negative_cache_ttl() default 60;
+
+        @AttributeDefinition(name = "System User Path",
+                description = "Path of the system users. Any change below this path clears the cache. "
+                        + "Leave empty to rely on the cache times only.")
+        String system_user_path() default DEFAULT_SYSTEM_USER_PATH;
     }
+
+    static final String DEFAULT_SYSTEM_USER_PATH = "/home/users/system";
+
+    /** The maximum number of results kept per cache. If reached, the cache is cleared. */
+    static final int MAX_CACHE_SIZE = 1000;
+
     /**
      * logger instance
      */
@@ -79,8 +106,27 @@ public class JcrSystemUserValidator implements ServiceUserValidator, ServicePrin
 
     private final Method isSystemUserMethod;
 
-    private final Set<String> validIds = new CopyOnWriteArraySet<String>();
-    private final Set<String> validPrincipalNames = new CopyOnWriteArraySet<String>();
+    /** The cached results by user id. */
+    private final ConcurrentHashMap<String, Verdict> idVerdicts = new ConcurrentHashMap<String, Verdict>();
+
+    /** The cached results by principal name. */
+    private final ConcurrentHashMap<String, Verdict> principalVerdicts = new ConcurrentHashMap<String, Verdict>();
+
+    private volatile long validTtl = TimeUnit.HOURS.toMillis(1);
+
+    private volatile long invalidTtl = TimeUnit.MINUTES.toMillis(1);
+
+    /** The session used to observe changes of the system users, if any. */
+    private Session observationSession;
+
+    private final EventListener invalidationListener = new EventListener() {
+
+        @Override
+        public void onEvent(final EventIterator events) {
+            log.debug("System users changed, clearing the validation cache");
+            clearCache();
+        }
+    };
 
     private boolean allowOnlySystemUsers;
 
@@ -111,6 +157,75 @@ public class JcrSystemUserValidator implements ServiceUserValidator, ServicePrin
     @Activate
     public void activate(final Config config) {
         allowOnlySystemUsers = config.allow_only_system_user();
+        validTtl = TimeUnit.SECONDS.toMillis(config.cache_ttl());
+        invalidTtl = TimeUnit.SECONDS.toMillis(config.negative_cache_ttl());
+        final String path = config.system_user_path();
+        if (allowOnlySystemUsers && path != null && !path.isEmpty()) {
+            cycleDetection.set(true);
+            try {
+                observationSession = repository.loginService(VALIDATION_SERVICE_USER, null);
+                observationSession.getWorkspace().getObservationManager().addEventListener(invalidationListener,
+                        Event.NODE_ADDED | Event.NODE_REMOVED | Event.NODE_MOVED
+                        | Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED,
+                        path, true, null, null, false);
+            } catch (final RepositoryException e) {
+                log.info("Unable to observe changes of the system users, cached results only expire: {}", e.getMessage());
+                closeObservationSession();
+            } finally {
+                cycleDetection.set(false);
+            }
+        }
+    }
+
+    @Deactivate
+    public void deactivate() {
+        if (observationSession != null) {
+            try {
+                observationSession.getWorkspace().getObservationManager().removeEventListener(invalidationListener);
+            } catch (final RepositoryException e) {
+                log.debug("Unable to remove the event listener", e);
+            }
+            closeObservationSession();
+        }
+        clearCache();
+    }
+
+    private void closeObservationSession() {
+        if (observationSession != null) {
+            observationSession.logout();
+            observationSession = null;
+        }
+    }
+
+    /**
+     * Remove all cached results.
+     */
+    void clearCache() {
+        idVerdicts.clear();
+        principalVerdicts.clear();
+    }
+
+    /**
+     * Get the cached result
+     * @return The result or {@code null} if not cached or expired
+     */
+    private static Boolean getCached(final ConcurrentHashMap<String, Verdict> cache, final String key) {
+        final Verdict verdict = cache.get(key);
+        if (verdict == null) {
+            return null;
+        }
+        if (verdict.expires < System.currentTimeMillis()) {
+            cache.remove(key, verdict);
+            return null;
+        }
+        return verdict.valid;
+    }
+
+    private void cache(final ConcurrentHashMap<String, Verdict> cache, final String key, final boolean valid) {
+        if (cache.size() >= MAX_CACHE_SIZE) {
+            cache.clear();
+        }
+        cache.put(key, new Verdict(valid, System.currentTimeMillis() + (valid ? validTtl : invalidTtl)));
     }
 
     @Override
@@ -127,9 +242,10 @@ public class JcrSystemUserValidator implements ServiceUserValidator, ServicePrin
             log.debug("There is no enforcement of JCR system users, therefore service user id '{}' is valid", serviceUserId);
             return true;
         }
-        if (validIds.contains(serviceUserId)) {
-            log.debug("The provided service user id '{}' has been already validated and is a known JCR system user id", serviceUserId);
-            return true;
+        final Boolean cached = getCached(idVerdicts, serviceUserId);
+        if (cached != null) {
+            log.debug("The provided service user id '{}' has been already validated, valid: {}", serviceUserId, cached);
+            return cached;
         } else {
             Session session = null;
             try {
@@ -147,10 +263,11 @@ public class JcrSystemUserValidator implements ServiceUserValidator, ServicePrin
                         final UserManager userManager = ((JackrabbitSession) session).getUserManager();
                         final Authorizable authorizable = userManager.getAuthorizable(serviceUserId);
                         if (isValidSystemUser(authorizable)) {
-                            validIds.add(serviceUserId);
+                            cache(idVerdicts, serviceUserId, true);
                             log.debug("The provided service user id {} is a known JCR system user id", serviceUserId);
                             return true;
                         }
+                        cache(idVerdicts, serviceUserId, false);
                     }
                 } catch (final RepositoryException e) {
                     log.warn("Could not get user information", e);
@@ -185,8 +302,12 @@ public class JcrSystemUserValidator implements ServiceUserValidator, ServicePrin
         Set<String> invalid = new HashSet<>();
         try {
             for (final String pName : servicePrincipalNames) {
-                if (validPrincipalNames.contains(pName)) {
-                    log.debug("The provided service principal name '{}' has been already validated and is a known JCR system user", pName);
+                final Boolean cached = getCached(principalVerdicts, pName);
+                if (cached != null) {
+                    log.debug("The provided service principal name '{}' has been already validated, valid: {}", pName, cached);
+                    if (!cached) {
+                        invalid.add(pName);
+                    }
                 } else {
                     if (session == null) {
                         /*
@@ -213,9 +334,10 @@ public class JcrSystemUserValidator implements ServiceUserValidator, ServicePrin
                         }
                     });
                     if (isValidSystemUser(authorizable)) {
-                        validPrincipalNames.add(pName);
+                        cache(principalVerdicts, pName, true);
                         log.debug("The provided service principal name {} is a known JCR system user", pName);
                     } else {
+                        cache(principalVerdicts, pName, false);
                         log.warn("The provided service principal name '{}' is not a known JCR system user id and therefore not allowed in the Sling Service User Mapper.", pName);
                         invalid.add(pName);
                     }
@@ -255,4 +377,16 @@ public class JcrSystemUserValidator implements ServiceUserValidator, ServicePrin
         }
         return false;
     }
-}
\ No newline at end of file
+
+    private static final class Verdict {
+
+        final boolean valid;
+
+        final long expires;
+
+        Verdict(final boolean valid, final long expires) {
+            this.valid = valid;
+            this.expires = expires;
+        }
+    }
+}
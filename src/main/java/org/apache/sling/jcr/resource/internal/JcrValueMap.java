@@ -30,6 +30,7 @@ import java.util.Set;
 import javax.jcr.Node;
 import javax.jcr.Property;
 import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
 
@@ -48,12 +49,12 @@ public class JcrValueMap implements ValueMap {
     /** A cache for the properties. */
     final Map<String, JcrPropertyMapCacheEntry> cache;
 
-    /** A cache for the values. */
-    final Map<String, Object> valueCache;
-
     /** Has the node been read completely? */
     boolean fullyRead;
 
+    /** The property values of the fully read cache, reset whenever the cache changes. */
+    private Map<String, Object> values;
+
     /**
      * Create a new JCR property map based on a node.
      * @param node The underlying node.
@@ -61,7 +62,6 @@ public class JcrValueMap implements ValueMap {
     public JcrValueMap(final Node node, final HelperData helper) {
         this.node = node;
         this.cache = new LinkedHashMap<String, JcrPropertyMapCacheEntry>();
-        this.valueCache = new LinkedHashMap<String, Object>();
         this.fullyRead = false;
         this.helper = helper;
     }
@@ -155,7 +155,7 @@ public class JcrValueMap implements ValueMap {
     @Override
     public boolean containsValue(final Object value) {
         readFully();
-        return valueCache.containsValue(value);
+        return getValues().containsValue(value);
     }
 
     /**
@@ -181,13 +181,7 @@ public class JcrValueMap implements ValueMap {
     @Override
     public Set<java.util.Map.Entry<String, Object>> entrySet() {
         readFully();
-        final Map<String, Object> sourceMap;
-        if (cache.size() == valueCache.size()) {
-            sourceMap = valueCache;
-        } else {
-            sourceMap = transformEntries(cache);
-        }
-        return Collections.unmodifiableSet(sourceMap.entrySet());
+        return getValues().entrySet();
     }
 
     /**
@@ -205,13 +199,7 @@ public class JcrValueMap implements ValueMap {
     @Override
     public Collection<Object> values() {
         readFully();
-        final Map<String, Object> sourceMap;
-        if (cache.size() == valueCache.size()) {
-            sourceMap = valueCache;
-        } else {
-            sourceMap = transformEntries(cache);
-        }
-        return Collections.unmodifiableCollection(sourceMap.values());
+        return getValues().values();
     }
 
     /**
@@ -241,28 +229,12 @@ public class JcrValueMap implements ValueMap {
     private JcrPropertyMapCacheEntry cacheProperty(final Property prop) {
         try {
             // calculate the key
-            final String name = prop.getName();
-            String key = null;
-            if ( name.indexOf("_x") != -1 ) {
-                // for compatibility with older versions we use the (wrong)
-                // ISO9075 path encoding
-                key = ISO9075.decode(name);
-                if ( key.equals(name) ) {
-                    key = null;
-                }
-            }
-            if ( key == null ) {
-                key = Text.unescapeIllegalJcrChars(name);
-            }
+            final String key = this.helper.unescapeKeyName(prop.getName());
             JcrPropertyMapCacheEntry entry = cache.get(key);
             if ( entry == null ) {
                 entry = new JcrPropertyMapCacheEntry(prop);
                 cache.put(key, entry);
-
-                final Object defaultValue = entry.getPropertyValue();
-                if (defaultValue != null) {
-                    valueCache.put(key, entry.getPropertyValue());
-                }
+                values = null;
             }
             return entry;
         } catch (final RepositoryException re) {
@@ -340,7 +312,7 @@ public class JcrValueMap implements ValueMap {
         try {
             // for compatibility with older versions we use the (wrong) ISO9075 path
             // encoding
-            final String oldKey = ISO9075.encodePath(name);
+            final String oldKey = this.helper.getLegacyKeyName(name);
             if (!oldKey.equals(key) && node.hasProperty(oldKey)) {
                 final Property prop = node.getProperty(oldKey);
                 return cacheProperty(prop);
@@ -362,20 +334,7 @@ public class JcrValueMap implements ValueMap {
      * @throws RepositoryException if the repository's namespaced prefixes cannot be retrieved
      */
     protected String escapeKeyName(final String key) throws RepositoryException {
-        final int indexOfPrefix = key.indexOf(':');
-        // check if colon is neither the first nor the last character
-        if (indexOfPrefix > 0 && key.length() > indexOfPrefix + 1) {
-            final String prefix = key.substring(0, indexOfPrefix);
-            for (final String existingPrefix : getNamespacePrefixes()) {
-                if (existingPrefix.equals(prefix)) {
-                    return prefix
-                            + ":"
-                            + Text.escapeIllegalJcrChars(key
-                                    .substring(indexOfPrefix + 1));
-                }
-            }
-        }
-        return Text.escapeIllegalJcrChars(key);
+        return this.helper.escapeKeyName(this.getNode().getSession(), key);
     }
 
     /**
@@ -397,6 +356,42 @@ public class JcrValueMap implements ValueMap {
         }
     }
 
+    /**
+     * Read the values of the given properties in one pass. Other properties
+     * are still read on demand. Binary values are streamed and therefore
+     * not read in advance.
+     * @param keys The keys of the properties to read. If {@code null}, all
+     *             properties are read.
+     * @throws IllegalArgumentException if a repository exception occurs
+     */
+    public void prefetch(final String[] keys) {
+        try {
+            final PropertyIterator pi;
+            if (keys == null) {
+                pi = node.getProperties();
+            } else {
+                final String[] names = new String[keys.length];
+                for (int i = 0; i < keys.length; i++) {
+                    // escaping removes all glob characters
+                    names[i] = escapeKeyName(keys[i]);
+                }
+                pi = node.getProperties(names);
+            }
+            while (pi.hasNext()) {
+                final Property prop = pi.nextProperty();
+                final JcrPropertyMapCacheEntry entry = this.cacheProperty(prop);
+                if (prop.getType() != PropertyType.BINARY) {
+                    entry.getPropertyValue();
+                }
+            }
+            if (keys == null) {
+                fullyRead = true;
+            }
+        } catch (final RepositoryException re) {
+            throw new IllegalArgumentException(re);
+        }
+    }
+
     // ---------- Unsupported Modification methods
 
     @Override
@@ -434,16 +429,19 @@ public class JcrValueMap implements ValueMap {
         return type;
     }
 
-    private Map<String, Object> transformEntries( Map<String, JcrPropertyMapCacheEntry> map) {
-
-        Map<String, Object> transformedEntries = new LinkedHashMap<String, Object>(map.size());
-        for ( Map.Entry<String, JcrPropertyMapCacheEntry> entry : map.entrySet() )
-            transformedEntries.put(entry.getKey(), entry.getValue().getPropertyValueOrNull());
-
-        return transformedEntries;
+    /**
+     * Get the values of all properties, the cache must have been read fully.
+     */
+    private Map<String, Object> getValues() {
+        if (this.values == null) {
+            final Map<String, Object> transformedEntries = new LinkedHashMap<String, Object>(cache.size());
+            for ( final Map.Entry<String, JcrPropertyMapCacheEntry> entry : cache.entrySet() )
+                transformedEntries.put(entry.getKey(), entry.getValue().getPropertyValueOrNull());
+            this.values = Collections.unmodifiableMap(transformedEntries);
+        }
+        return this.values;
     }
 
-
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("JcrPropertyMap [node=");
@@ -466,10 +464,6 @@ public class JcrValueMap implements ValueMap {
         return sb.toString();
     }
 
-    private String[] getNamespacePrefixes() throws RepositoryException {
-        return this.helper.getNamespacePrefixes(this.getNode().getSession());
-    }
-
     private ClassLoader getDynamicClassLoader() {
         return helper.getDynamicClassLoader();
     }
@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.path.Path;
+import org.apache.sling.spi.resource.provider.ObservationReporter;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers resource changes to the {@link ObservationReporter} from a
+ * dedicated thread, so the JCR observation thread is not blocked by slow
+ * observers.
+ * <p>
+ * Changes are collected for a configurable time window. Within the window,
+ * a change is dropped if the last pending change for the same path, user,
+ * external flag and configuration has the same type. The number of pending
+ * changes is bounded, the calling thread never waits. Once the bound is
+ * reached, further changes of a configuration are merged into a single
+ * change of their common ancestor per change type, configured path, user
+ * and external flag until the pending changes have been handed over. The
+ * merged change is never outside of the configured paths.
+ */
+public class ObservationDispatcher implements Closeable {
+
+    private final Logger logger = LoggerFactory.getLogger(ObservationDispatcher.class);
+
+    private final ObservationReporter reporter;
+
+    private final ObservationStatistics statistics;
+
+    private final long window;
+
+    private final int maxPending;
+
+    private final Object lock = new Object();
+
+    /** Pending changes per configuration, guarded by {@link #lock}. */
+    private Map<ObserverConfiguration, Batch> pending = new LinkedHashMap<ObserverConfiguration, Batch>();
+
+    /** Number of pending changes, guarded by {@link #lock}. */
+    private int pendingCount;
+
+    private volatile boolean running = true;
+
+    private final Thread thread;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    private volatile int maxPendingCount;
+
+    /**
+     * Create and start a new dispatcher
+     * @param reporter The reporter
+     * @param window The time in milliseconds changes are collected before they are reported
+     * @param maxPending The maximum number of pending changes
+     */
+    public ObservationDispatcher(final ObservationReporter reporter, final long window, final int maxPending) {
+        this(reporter, window, maxPending, new ObservationStatistics());
+    }
+
+    /**
+     * Create and start a new dispatcher
+     * @param reporter The reporter
+     * @param window The time in milliseconds changes are collected before they are reported
+     * @param maxPending The maximum number of pending changes
+     * @param statistics The statistics to record the reported changes
+     */
+    public ObservationDispatcher(final ObservationReporter reporter,
+            final long window,
+            final int maxPending,
+            final ObservationStatistics statistics) {
+        this.reporter = reporter;
+        this.statistics = statistics;
+        this.window = window;
+        this.maxPending = maxPending;
+        this.thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "Apache Sling JCR Resource Change Dispatcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stop the dispatcher. Pending changes are still reported.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        synchronized (this.lock) {
+            this.lock.notifyAll();
+        }
+        try {
+            this.thread.join(10000);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue the changes for the configuration. This never waits: if the
+     * maximum number of pending changes is reached, the changes are merged
+     * into a change of their common ancestor within the configured paths.
+     * If the dispatcher is stopped,
+     * the changes are reported directly.
+     * @param config The observer configuration
+     * @param changes The changes
+     */
+    public void submit(final ObserverConfiguration config, final List<ResourceChange> changes) {
+        this.submittedCount.addAndGet(changes.size());
+        boolean direct = false;
+        synchronized (this.lock) {
+            if (!this.running) {
+                direct = true;
+            } else {
+                // the pending map is replaced by the dispatcher, always look it up
+                Batch batch = this.pending.get(config);
+                if (batch == null) {
+                    batch = new Batch();
+                    this.pending.put(config, batch);
+                }
+                for (final ResourceChange change : changes) {
+                    final String key = key(change.getPath(), change);
+                    if (batch.lastTypes.get(key) == change.getType()) {
+                        this.coalescedCount.incrementAndGet();
+                        continue;
+                    }
+                    if (this.pendingCount >= this.maxPending) {
+                        this.overflowCount.incrementAndGet();
+                        if (!batch.overflow(config, change)) {
+                            continue;
+                        }
+                    } else {
+                        batch.lastTypes.put(key, change.getType());
+                        batch.changes.add(change);
+                    }
+                    this.pendingCount++;
+                    if (this.pendingCount > this.maxPendingCount) {
+                        this.maxPendingCount = this.pendingCount;
+                    }
+                }
+                this.lock.notifyAll();
+            }
+        }
+        if (direct && !changes.isEmpty()) {
+            this.report(config, new ArrayList<ResourceChange>(changes));
+        }
+    }
+
+    private void dispatch() {
+        boolean interrupted = false;
+        while (!interrupted) {
+            final Map<ObserverConfiguration, Batch> batches;
+            synchronized (this.lock) {
+                while (this.running && this.pendingCount == 0) {
+                    try {
+                        this.lock.wait();
+                    } catch (final InterruptedException ie) {
+                        interrupted = true;
+                        break;
+                    }
+                }
+                // collect changes for the window unless the queue is full
+                final long end = System.currentTimeMillis() + this.window;
+                long remaining = this.window;
+                while (!interrupted && this.running && this.pendingCount < this.maxPending && remaining > 0) {
+                    try {
+                        this.lock.wait(remaining);
+                    } catch (final InterruptedException ie) {
+                        interrupted = true;
+                    }
+                    remaining = end - System.currentTimeMillis();
+                }
+                if (interrupted) {
+                    // later changes are reported by the submitting threads
+                    this.running = false;
+                }
+                if (!this.running && this.pendingCount == 0) {
+                    break;
+                }
+                batches = this.pending;
+                this.pending = new LinkedHashMap<ObserverConfiguration, Batch>();
+                this.pendingCount = 0;
+            }
+            for (final Map.Entry<ObserverConfiguration, Batch> entry : batches.entrySet()) {
+                final List<ResourceChange> batchChanges = entry.getValue().getChanges();
+                if (!batchChanges.isEmpty()) {
+                    this.report(entry.getKey(), batchChanges);
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The key for coalescing changes of a path.
+     */
+    private static String key(final String path, final ResourceChange change) {
+        return path + '\n' + change.getUserId() + '\n' + change.isExternal();
+    }
+
+    /**
+     * Get the common ancestor of two paths.
+     */
+    static String getCommonAncestor(final String path1, final String path2) {
+        String ancestor = path1;
+        while (ancestor != null
+                && !ancestor.equals(path2)
+                && !"/".equals(ancestor)
+                && !path2.startsWith(ancestor.concat("/"))) {
+            ancestor = ResourceUtil.getParent(ancestor);
+        }
+        return ancestor == null ? "/" : ancestor;
+    }
+
+    private void report(final ObserverConfiguration config, final List<ResourceChange> changes) {
+        try {
+            this.statistics.report(this.reporter, config, changes);
+            this.deliveredCount.addAndGet(changes.size());
+        } catch (final RuntimeException e) {
+            logger.warn("Unable to report resource changes to " + config, e);
+        }
+    }
+
+    /** @return The number of changes submitted */
+    public long getSubmittedCount() {
+        return this.submittedCount.get();
+    }
+
+    /** @return The number of changes dropped as the same change was already pending */
+    public long getCoalescedCount() {
+        return this.coalescedCount.get();
+    }
+
+    /** @return The number of changes reported */
+    public long getDeliveredCount() {
+        return this.deliveredCount.get();
+    }
+
+    /** @return The number of changes merged into an ancestor change as the queue was full */
+    public long getOverflowCount() {
+        return this.overflowCount.get();
+    }
+
+    /** @return The number of currently pending changes */
+    public int getPendingCount() {
+        synchronized (this.lock) {
+            return this.pendingCount;
+        }
+    }
+
+    /** @return The highest number of pending changes so far */
+    public int getMaxPendingCount() {
+        return this.maxPendingCount;
+    }
+
+    /**
+     * The pending changes of a configuration.
+     */
+    private static final class Batch {
+
+        final List<ResourceChange> changes = new ArrayList<ResourceChange>();
+
+        /** The type of the last pending change per path, user and external flag. */
+        final Map<String, ChangeType> lastTypes = new HashMap<String, ChangeType>();
+
+        /**
+         * The merged changes which did not fit into the queue, per change type,
+         * configured path, user and external flag.
+         */
+        Map<String, ResourceChange> overflow;
+
+        /**
+         * Merge a change which does not fit into the queue.
+         * @return {@code true} if a new pending change was created
+         */
+        boolean overflow(final ObserverConfiguration config, final ResourceChange change) {
+            if (this.overflow == null) {
+                this.overflow = new LinkedHashMap<String, ResourceChange>();
+            }
+            final Path configPath = config.getPaths().matches(change.getPath());
+            final String key = key(configPath == null ? change.getPath() : configPath.getPath(), change)
+                    + '\n' + change.getType();
+            final ResourceChange previous = this.overflow.get(key);
+            if (previous == null) {
+                this.overflow.put(key, change);
+                return true;
+            }
+            if (previous.getPath().equals(change.getPath())) {
+                return false;
+            }
+            final String path = getCommonAncestor(previous.getPath(), change.getPath());
+            if (config.getPaths().matches(path) == null) {
+                // never widen a change beyond the configured paths, e.g. for glob patterns
+                this.changes.add(change);
+                return true;
+            }
+            this.overflow.put(key, new JcrResourceChange(change.getType(), path,
+                    change.isExternal(), change.getUserId()));
+            return false;
+        }
+
+        /**
+         * The pending changes, followed by the merged ones.
+         */
+        List<ResourceChange> getChanges() {
+            if (this.overflow != null) {
+                this.changes.addAll(this.overflow.values());
+            }
+            return this.changes;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.spi.resource.provider.ObservationReporter;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+
+/**
+ * Counters and timers of the JCR observation listeners, per
+ * {@link ObserverConfiguration} and in total.
+ * <p>
+ * The events received and the time spent in the listener are only
+ * available per configuration if a listener is registered per
+ * configuration. A single listener for all configurations is only
+ * accounted for in the totals.
+ */
+public class ObservationStatistics implements ObservationStatisticsMBean {
+
+    private static final String[] ITEM_NAMES = {"id", "paths", "excludedPaths", "changeTypes", "includeExternal",
+            "eventsReceived", "eventProcessingTime", "changesReported", "externalChanges", "localChanges",
+            "reportingTime"};
+
+    private static final String[] ITEM_DESCRIPTIONS = {"Id", "Paths", "Excluded paths", "Change types",
+            "Include external changes", "Number of JCR events received", "Time spent in the listener (ms)",
+            "Number of changes reported", "Number of external changes reported",
+            "Number of local changes reported", "Time spent reporting changes (ms)"};
+
+    @SuppressWarnings("rawtypes")
+    private static final OpenType[] ITEM_TYPES = {SimpleType.LONG, SimpleType.STRING, SimpleType.STRING,
+            SimpleType.STRING, SimpleType.BOOLEAN, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+            SimpleType.LONG, SimpleType.LONG, SimpleType.LONG};
+
+    private final ConcurrentHashMap<ObserverConfiguration, ConfigStatistics> configs = new ConcurrentHashMap<ObserverConfiguration, ConfigStatistics>();
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+
+    private final AtomicLong eventNanos = new AtomicLong();
+
+    private final AtomicLong changesReported = new AtomicLong();
+
+    private final AtomicLong reportNanos = new AtomicLong();
+
+    private volatile ObservationDispatcher dispatcher;
+
+    /**
+     * Record the processing of JCR events by a listener.
+     * @param config The configuration of the listener or {@code null} for a
+     *               listener registered for several configurations
+     * @param events The number of events
+     * @param nanos The time spent in nanoseconds
+     */
+    public void eventsProcessed(final ObserverConfiguration config, final long events, final long nanos) {
+        this.eventsReceived.addAndGet(events);
+        this.eventNanos.addAndGet(nanos);
+        if ( config != null ) {
+            final ConfigStatistics stats = this.get(config);
+            stats.eventsReceived.addAndGet(events);
+            stats.eventNanos.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * Report the changes to the reporter and record the number of changes
+     * and the time spent.
+     * @param reporter The reporter
+     * @param config The configuration
+     * @param changes The changes
+     */
+    public void report(final ObservationReporter reporter,
+            final ObserverConfiguration config,
+            final List<ResourceChange> changes) {
+        final long start = System.nanoTime();
+        try {
+            reporter.reportChanges(config, changes, false);
+        } finally {
+            final long nanos = System.nanoTime() - start;
+            long external = 0;
+            for(final ResourceChange change : changes) {
+                if ( change.isExternal() ) {
+                    external++;
+                }
+            }
+            this.changesReported.addAndGet(changes.size());
+            this.reportNanos.addAndGet(nanos);
+
+            final ConfigStatistics stats = this.get(config);
+            stats.externalChanges.addAndGet(external);
+            stats.localChanges.addAndGet(changes.size() - external);
+            stats.reportNanos.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * Drop the statistics of all configurations which are not in the given collection.
+     * @param current The current configurations
+     */
+    public void retain(final Collection<ObserverConfiguration> current) {
+        this.configs.keySet().retainAll(new HashSet<ObserverConfiguration>(current));
+    }
+
+    /**
+     * Set the dispatcher used for asynchronous observation.
+     * @param dispatcher The dispatcher or {@code null}
+     */
+    void setDispatcher(final ObservationDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    private ConfigStatistics get(final ObserverConfiguration config) {
+        ConfigStatistics stats = this.configs.get(config);
+        if ( stats == null ) {
+            stats = new ConfigStatistics(this.nextId.incrementAndGet());
+            final ConfigStatistics old = this.configs.putIfAbsent(config, stats);
+            if ( old != null ) {
+                stats = old;
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public TabularData getObservers() {
+        try {
+            final CompositeType rowType = new CompositeType("ObserverStatistics", "Statistics of an observer configuration",
+                    ITEM_NAMES, ITEM_DESCRIPTIONS, ITEM_TYPES);
+            final TabularDataSupport data = new TabularDataSupport(new TabularType("ObserverStatistics",
+                    "Statistics per observer configuration", rowType, new String[] {"id"}));
+            for(final Map.Entry<ObserverConfiguration, ConfigStatistics> entry : this.configs.entrySet()) {
+                final ObserverConfiguration config = entry.getKey();
+                final ConfigStatistics stats = entry.getValue();
+                data.put(new CompositeDataSupport(rowType, ITEM_NAMES, new Object[] {
+                        stats.id,
+                        String.valueOf(config.getPaths()),
+                        String.valueOf(config.getExcludedPaths()),
+                        String.valueOf(config.getChangeTypes()),
+                        config.includeExternal(),
+                        stats.eventsReceived.get(),
+                        toMillis(stats.eventNanos.get()),
+                        stats.externalChanges.get() + stats.localChanges.get(),
+                        stats.externalChanges.get(),
+                        stats.localChanges.get(),
+                        toMillis(stats.reportNanos.get())
+                }));
+            }
+            return data;
+        } catch (final OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public long getEventsReceived() {
+        return this.eventsReceived.get();
+    }
+
+    @Override
+    public long getEventProcessingTime() {
+        return toMillis(this.eventNanos.get());
+    }
+
+    @Override
+    public long getChangesReported() {
+        return this.changesReported.get();
+    }
+
+    @Override
+    public long getReportingTime() {
+        return toMillis(this.reportNanos.get());
+    }
+
+    @Override
+    public long getPendingChanges() {
+        final ObservationDispatcher d = this.dispatcher;
+        return d == null ? 0 : d.getPendingCount();
+    }
+
+    @Override
+    public long getMaxPendingChanges() {
+        final ObservationDispatcher d = this.dispatcher;
+        return d == null ? 0 : d.getMaxPendingCount();
+    }
+
+    @Override
+    public long getCoalescedChanges() {
+        final ObservationDispatcher d = this.dispatcher;
+        return d == null ? 0 : d.getCoalescedCount();
+    }
+
+    @Override
+    public long getOverflowedChanges() {
+        final ObservationDispatcher d = this.dispatcher;
+        return d == null ? 0 : d.getOverflowCount();
+    }
+
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static final class ConfigStatistics {
+
+        final long id;
+
+        final AtomicLong eventsReceived = new AtomicLong();
+
+        final AtomicLong eventNanos = new AtomicLong();
+
+        final AtomicLong externalChanges = new AtomicLong();
+
+        final AtomicLong localChanges = new AtomicLong();
+
+        final AtomicLong reportNanos = new AtomicLong();
+
+        ConfigStatistics(final long id) {
+            this.id = id;
+        }
+    }
+}
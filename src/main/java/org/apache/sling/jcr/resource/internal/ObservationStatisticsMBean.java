@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * Statistics of the JCR observation listeners.
+ */
+public interface ObservationStatisticsMBean {
+
+    /**
+     * One row per observer configuration with the events received, the
+     * changes reported and the time spent.
+     * @return The statistics per observer configuration
+     */
+    TabularData getObservers();
+
+    /** @return The number of JCR events received by all listeners */
+    long getEventsReceived();
+
+    /** @return The time in milliseconds spent in all listeners */
+    long getEventProcessingTime();
+
+    /** @return The number of changes reported to all observers */
+    long getChangesReported();
+
+    /** @return The time in milliseconds spent reporting changes to all observers */
+    long getReportingTime();
+
+    /** @return The number of changes waiting to be reported asynchronously */
+    long getPendingChanges();
+
+    /** @return The highest number of changes waiting to be reported asynchronously */
+    long getMaxPendingChanges();
+
+    /** @return The number of changes dropped as the same change was already pending */
+    long getCoalescedChanges();
+
+    /** @return The number of changes merged into an ancestor change as the queue was full */
+    long getOverflowedChanges();
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.path.Path;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+
+/**
+ * Finds the observer configurations a resource change has to be reported to.
+ * Plain include paths are kept in a path trie, so only the configurations
+ * registered for an ancestor of the changed path are checked. Glob
+ * configurations are checked one by one.
+ * <p>
+ * The matching follows the JCR event filter created by
+ * {@link JcrListenerBaseConfig} for a single configuration: deep path
+ * matching, excluded paths, change types, external events and the removal
+ * of ancestors of an observed path.
+ */
+class ObserverConfigurationMatcher {
+
+    private final TrieNode root = new TrieNode();
+
+    /** Configurations with at least one glob pattern, with the static prefix of each pattern. */
+    private final Map<ObserverConfiguration, List<String>> globConfigs = new HashMap<ObserverConfiguration, List<String>>();
+
+    ObserverConfigurationMatcher(final Collection<ObserverConfiguration> configs) {
+        for (final ObserverConfiguration config : configs) {
+            for (final String path : config.getPaths().toStringSet()) {
+                if (path.startsWith(Path.GLOB_PREFIX)) {
+                    List<String> prefixes = this.globConfigs.get(config);
+                    if (prefixes == null) {
+                        prefixes = new ArrayList<String>();
+                        this.globConfigs.put(config, prefixes);
+                    }
+                    prefixes.add(getStaticPrefix(path.substring(Path.GLOB_PREFIX.length())));
+                } else {
+                    this.getOrCreate(path).configs.add(config);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get all configurations the change has to be reported to.
+     * @param change The change
+     * @return The matching configurations, might be empty
+     */
+    Set<ObserverConfiguration> match(final ResourceChange change) {
+        final Set<ObserverConfiguration> result = new LinkedHashSet<ObserverConfiguration>();
+        final String path = change.getPath();
+        final boolean isRemove = change.getType() == ChangeType.REMOVED;
+
+        // walk down the trie, each visited node is an ancestor or the path itself
+        TrieNode current = this.root;
+        this.addMatching(result, current.configs, change);
+        int start = 1;
+        while (current != null && start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            current = current.children.get(path.substring(start, end));
+            if (current != null) {
+                this.addMatching(result, current.configs, change);
+            }
+            start = end + 1;
+        }
+        // removing a node removes all observed paths below it
+        if (isRemove && current != null) {
+            for (final TrieNode child : current.children.values()) {
+                this.addDescendants(result, child, change);
+            }
+        }
+
+        for (final Map.Entry<ObserverConfiguration, List<String>> entry : this.globConfigs.entrySet()) {
+            final ObserverConfiguration config = entry.getKey();
+            if (result.contains(config) || !this.accepts(config, change)) {
+                continue;
+            }
+            if (config.getPaths().matches(path) != null) {
+                if (config.getExcludedPaths().matches(path) == null) {
+                    result.add(config);
+                }
+            } else if (isRemove) {
+                // the removed subtree might contain matching resources
+                for (final String prefix : entry.getValue()) {
+                    if (isAncestorOrSelf(path, prefix) || isAncestorOrSelf(prefix, path)) {
+                        result.add(config);
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addMatching(final Set<ObserverConfiguration> result,
+            final List<ObserverConfiguration> candidates,
+            final ResourceChange change) {
+        for (final ObserverConfiguration config : candidates) {
+            if (this.accepts(config, change) && config.getExcludedPaths().matches(change.getPath()) == null) {
+                result.add(config);
+            }
+        }
+    }
+
+    private void addDescendants(final Set<ObserverConfiguration> result,
+            final TrieNode node,
+            final ResourceChange change) {
+        for (final ObserverConfiguration config : node.configs) {
+            if (this.accepts(config, change)) {
+                result.add(config);
+            }
+        }
+        for (final TrieNode child : node.children.values()) {
+            this.addDescendants(result, child, change);
+        }
+    }
+
+    private boolean accepts(final ObserverConfiguration config, final ResourceChange change) {
+        return config.getChangeTypes().contains(change.getType())
+                && (!change.isExternal() || config.includeExternal());
+    }
+
+    private TrieNode getOrCreate(final String path) {
+        TrieNode current = this.root;
+        for (final String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                TrieNode child = current.children.get(segment);
+                if (child == null) {
+                    child = new TrieNode();
+                    current.children.put(segment, child);
+                }
+                current = child;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Get the part of a glob pattern up to the last slash before the first wildcard.
+     */
+    private static String getStaticPrefix(final String glob) {
+        int pos = glob.length();
+        for (final char c : new char[] {'*', '?', '['}) {
+            final int index = glob.indexOf(c);
+            if (index != -1 && index < pos) {
+                pos = index;
+            }
+        }
+        if (pos == glob.length()) {
+            return glob;
+        }
+        final int slash = glob.lastIndexOf('/', pos);
+        return slash <= 0 ? "/" : glob.substring(0, slash);
+    }
+
+    private static boolean isAncestorOrSelf(final String path, final String descendant) {
+        return "/".equals(path) || descendant.startsWith(path)
+                && (descendant.length() == path.length() || descendant.charAt(path.length()) == '/');
+    }
+
+    private static final class TrieNode {
+
+        final Map<String, TrieNode> children = new HashMap<String, TrieNode>();
+
+        final List<ObserverConfiguration> configs = new ArrayList<ObserverConfiguration>();
+    }
+}
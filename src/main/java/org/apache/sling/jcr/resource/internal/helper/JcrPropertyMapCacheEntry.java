@@ -37,9 +37,11 @@ import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
+import javax.jcr.ValueFactory;
 import javax.jcr.ValueFormatException;
 
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.ClassUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,8 +56,11 @@ public class JcrPropertyMapCacheEntry {
     /** Whether this is an array or a single value. */
     private final boolean isArray;
 
-    /** The value of the object. */
-    private final Object propertyValue;
+    /** The JCR property type - only set for existing values. */
+    private final int propertyType;
+
+    /** The value of the object, lazily read for existing values. */
+    private Object propertyValue;
 
     /**
      * Create a new cache entry from a property.
@@ -67,11 +72,7 @@ public class JcrPropertyMapCacheEntry {
     throws RepositoryException {
         this.property = prop;
         this.isArray = prop.isMultiple();
-        if (property.getType() != PropertyType.BINARY) {
-            this.propertyValue = JcrResourceUtil.toJavaObject(prop);
-        } else {
-            this.propertyValue = null;
-        }
+        this.propertyType = prop.getType();
     }
 
     /**
@@ -83,13 +84,17 @@ public class JcrPropertyMapCacheEntry {
     public JcrPropertyMapCacheEntry(final Object value, final Node node)
     throws RepositoryException {
         this.property = null;
+        this.propertyType = PropertyType.UNDEFINED;
         this.propertyValue = value;
         this.isArray = value.getClass().isArray();
         // check if values can be stored in JCR
         if ( isArray ) {
-            final Object[] values = convertToObjectArray(value);
-            for(int i=0; i<values.length; i++) {
-                failIfCannotStore(values[i], node);
+            // arrays of numbers and booleans can always be stored
+            if ( !isPrimitiveArray(value) ) {
+                final Object[] values = convertToObjectArray(value);
+                for(int i=0; i<values.length; i++) {
+                    failIfCannotStore(values[i], node);
+                }
             }
         } else {
             failIfCannotStore(value, node);
@@ -167,6 +172,70 @@ public class JcrPropertyMapCacheEntry {
         return values;
     }
 
+    /**
+     * Check whether the object is an array of a primitive number type or
+     * of booleans. Char arrays are not included as characters are stored
+     * as strings.
+     * @param value The object
+     * @return {@code true} if the value is such an array
+     */
+    private static boolean isPrimitiveArray(final Object value) {
+        final Class<?> componentType = value.getClass().getComponentType();
+        return componentType != null && componentType.isPrimitive() && componentType != char.class;
+    }
+
+    /**
+     * Create the values for an array of a primitive type without boxing
+     * each element. Integral types are stored as longs, floating point
+     * types and bytes as doubles.
+     * @param value The primitive array
+     * @param node The node
+     * @return The values
+     * @throws RepositoryException If creating the values fails
+     */
+    private static Value[] createValues(final Object value, final Node node)
+    throws RepositoryException {
+        final ValueFactory fac = node.getSession().getValueFactory();
+        final Value[] result = new Value[Array.getLength(value)];
+        if (value instanceof long[]) {
+            final long[] array = (long[]) value;
+            for (int i = 0; i < array.length; i++) {
+                result[i] = fac.createValue(array[i]);
+            }
+        } else if (value instanceof int[]) {
+            final int[] array = (int[]) value;
+            for (int i = 0; i < array.length; i++) {
+                result[i] = fac.createValue(array[i]);
+            }
+        } else if (value instanceof short[]) {
+            final short[] array = (short[]) value;
+            for (int i = 0; i < array.length; i++) {
+                result[i] = fac.createValue(array[i]);
+            }
+        } else if (value instanceof double[]) {
+            final double[] array = (double[]) value;
+            for (int i = 0; i < array.length; i++) {
+                result[i] = fac.createValue(array[i]);
+            }
+        } else if (value instanceof float[]) {
+            final float[] array = (float[]) value;
+            for (int i = 0; i < array.length; i++) {
+                result[i] = fac.createValue((double) array[i]);
+            }
+        } else if (value instanceof byte[]) {
+            final byte[] array = (byte[]) value;
+            for (int i = 0; i < array.length; i++) {
+                result[i] = fac.createValue((double) array[i]);
+            }
+        } else {
+            final boolean[] array = (boolean[]) value;
+            for (int i = 0; i < array.length; i++) {
+                result[i] = fac.createValue(array[i]);
+            }
+        }
+        return result;
+    }
+
     /**
      * Whether this value is an array or not
      * @return {@code true} if an array.
@@ -181,7 +250,15 @@ public class JcrPropertyMapCacheEntry {
      * @throws RepositoryException If something goes wrong
      */
     public Object getPropertyValue() throws RepositoryException {
-        return this.propertyValue != null ? this.propertyValue : JcrResourceUtil.toJavaObject(property);
+        if (this.propertyValue != null) {
+            return this.propertyValue;
+        }
+        final Object value = JcrResourceUtil.toJavaObject(property);
+        // binaries are streams and are created on each call
+        if (this.propertyType != PropertyType.BINARY) {
+            this.propertyValue = value;
+        }
+        return value;
     }
 
     /**
@@ -213,6 +290,14 @@ public class JcrPropertyMapCacheEntry {
         try {
             final boolean targetIsArray = type.isArray();
 
+            if (targetIsArray && type.getComponentType().isPrimitive()) {
+                return (T) convertToPrimitiveArray(type.getComponentType(), node, dynamicClassLoader);
+            }
+
+            if (Value[].class == type && this.property == null && this.isArray && isPrimitiveArray(this.propertyValue)) {
+                return (T) createValues(this.propertyValue, node);
+            }
+
             if (this.isArray) {
 
                 final Object[] sourceArray = convertToObjectArray(this.getPropertyValue());
@@ -224,6 +309,14 @@ public class JcrPropertyMapCacheEntry {
 
             } else {
 
+                if (this.propertyValue == null && this.property != null) {
+                    // read directly into the requested type if possible
+                    result = readAsType(type);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+
                 final Object sourceObject = this.getPropertyValue();
                 if (targetIsArray) {
                     result = (T) convertToArray(new Object[] {sourceObject}, type.getComponentType(), node, dynamicClassLoader);
@@ -249,6 +342,166 @@ public class JcrPropertyMapCacheEntry {
         return result;
     }
 
+    /**
+     * Convert the value to an array of a primitive type.
+     * @param componentType The primitive component type
+     * @param node The node
+     * @param dynamicClassLoader The classloader
+     * @return The primitive array
+     * @throws RepositoryException If reading the value fails
+     */
+    private Object convertToPrimitiveArray(final Class<?> componentType,
+            final Node node,
+            final ClassLoader dynamicClassLoader)
+    throws RepositoryException {
+        if (this.isArray && this.propertyValue == null && this.property != null) {
+            final Object result = readAsPrimitiveArray(componentType);
+            if (result != null) {
+                return result;
+            }
+        }
+        final Object value = this.getPropertyValue();
+        if (value.getClass().getComponentType() == componentType) {
+            // copy the cached array, callers might modify the result
+            final int length = Array.getLength(value);
+            final Object result = Array.newInstance(componentType, length);
+            System.arraycopy(value, 0, result, 0, length);
+            return result;
+        }
+
+        // generic conversion through the wrapper type
+        final Object[] sourceArray = this.isArray ? convertToObjectArray(value) : new Object[] {value};
+        final Object[] converted = convertToArray(sourceArray, ClassUtils.primitiveToWrapper(componentType),
+                node, dynamicClassLoader);
+        final Object result = Array.newInstance(componentType, converted.length);
+        for (int i = 0; i < converted.length; i++) {
+            Array.set(result, i, converted[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Read a multi value property directly into an array of a primitive
+     * type, without creating the generic Java objects for the values.
+     * @param componentType The primitive component type
+     * @return The array or {@code null} if there is no fast path for the
+     *         combination of property type and requested type
+     * @throws RepositoryException If reading the values fails
+     */
+    private Object readAsPrimitiveArray(final Class<?> componentType) throws RepositoryException {
+        switch (this.propertyType) {
+        case PropertyType.LONG:
+            if (long.class == componentType) {
+                final Value[] values = this.property.getValues();
+                final long[] result = new long[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    result[i] = values[i].getLong();
+                }
+                return result;
+            } else if (int.class == componentType) {
+                final Value[] values = this.property.getValues();
+                final int[] result = new int[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    result[i] = (int) values[i].getLong();
+                }
+                return result;
+            } else if (double.class == componentType) {
+                final Value[] values = this.property.getValues();
+                final double[] result = new double[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    result[i] = values[i].getLong();
+                }
+                return result;
+            }
+            break;
+        case PropertyType.DOUBLE:
+            if (double.class == componentType) {
+                final Value[] values = this.property.getValues();
+                final double[] result = new double[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    result[i] = values[i].getDouble();
+                }
+                return result;
+            }
+            break;
+        case PropertyType.BOOLEAN:
+            if (boolean.class == componentType) {
+                final Value[] values = this.property.getValues();
+                final boolean[] result = new boolean[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    result[i] = values[i].getBoolean();
+                }
+                return result;
+            }
+            break;
+        default:
+            break;
+        }
+        return null;
+    }
+
+    /**
+     * Read a single value property directly into the requested type, without
+     * creating the generic Java object for the value first. The result is the
+     * same as converting the generic object.
+     * @param type The requested type
+     * @return The value or {@code null} if there is no fast path for the
+     *         combination of property type and requested type
+     * @throws RepositoryException If reading the value fails
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T readAsType(final Class<T> type) throws RepositoryException {
+        switch (this.propertyType) {
+        case PropertyType.LONG:
+            if (Long.class == type) {
+                return (T) Long.valueOf(this.property.getLong());
+            } else if (Integer.class == type) {
+                return (T) Integer.valueOf((int) this.property.getLong());
+            } else if (Short.class == type) {
+                return (T) Short.valueOf((short) this.property.getLong());
+            } else if (Byte.class == type) {
+                return (T) Byte.valueOf((byte) this.property.getLong());
+            } else if (Double.class == type) {
+                return (T) Double.valueOf(this.property.getLong());
+            } else if (String.class == type) {
+                return (T) Long.toString(this.property.getLong());
+            }
+            break;
+        case PropertyType.DOUBLE:
+            if (Double.class == type) {
+                return (T) Double.valueOf(this.property.getDouble());
+            } else if (Float.class == type) {
+                return (T) Float.valueOf((float) this.property.getDouble());
+            }
+            break;
+        case PropertyType.BOOLEAN:
+            if (Boolean.class == type) {
+                return (T) Boolean.valueOf(this.property.getBoolean());
+            }
+            break;
+        case PropertyType.STRING:
+            if (String.class == type) {
+                return (T) this.property.getString();
+            }
+            break;
+        case PropertyType.DATE:
+            if (Calendar.class == type) {
+                return (T) this.property.getDate();
+            } else if (Date.class == type) {
+                return (T) this.property.getDate().getTime();
+            }
+            break;
+        case PropertyType.DECIMAL:
+            if (BigDecimal.class == type) {
+                return (T) this.property.getDecimal();
+            }
+            break;
+        default:
+            break;
+        }
+        return null;
+    }
+
     private <T> T[] convertToArray(final Object[] sourceArray,
             final Class<T> type,
             final Node node,
@@ -18,13 +18,11 @@
  */
 package org.apache.sling.jcr.resource.internal.helper.jcr;
 
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.NoSuchElementException;
 
+import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
-import javax.jcr.Value;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
 import javax.jcr.query.Row;
@@ -36,13 +34,17 @@ import org.apache.sling.api.resource.QuerySyntaxException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.wrappers.ValueMapDecorator;
-import org.apache.sling.jcr.resource.internal.helper.JcrResourceUtil;
 import org.apache.sling.spi.resource.provider.ProviderContext;
 import org.apache.sling.spi.resource.provider.QueryLanguageProvider;
 import org.apache.sling.spi.resource.provider.ResolveContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Query language provider for the languages supported by the repository.
+ * Limit, offset and bind values can be passed with a hint comment at the
+ * end of the statement, see {@link QueryCache}.
+ */
 public class BasicQueryLanguageProvider implements QueryLanguageProvider<JcrProviderState> {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
@@ -50,17 +52,19 @@ public class BasicQueryLanguageProvider implements QueryLanguageProvider<JcrProv
     @SuppressWarnings("deprecation")
     private static final String DEFAULT_QUERY_LANGUAGE = Query.XPATH;
 
-    /** column name for node path */
-    private static final String QUERY_COLUMN_PATH = "jcr:path";
-
-    /** column name for score value */
-    private static final String QUERY_COLUMN_SCORE = "jcr:score";
-
     /** The provider context. */
     private final ProviderContext providerContext;
 
+    /** The statistics of the executed queries. */
+    private final QueryStatistics statistics;
+
     public BasicQueryLanguageProvider(final ProviderContext ctx) {
+        this(ctx, new QueryStatistics());
+    }
+
+    public BasicQueryLanguageProvider(final ProviderContext ctx, final QueryStatistics statistics) {
         this.providerContext = ctx;
+        this.statistics = statistics;
     }
 
     @Override
@@ -77,12 +81,18 @@ public class BasicQueryLanguageProvider implements QueryLanguageProvider<JcrProv
             final String query,
             final String language) {
         try {
-            final QueryResult res = JcrResourceUtil.query(ctx.getProviderState().getSession(), query, language);
-            return new JcrNodeResourceIterator(ctx.getResourceResolver(),
+            final QueryStatistics.Execution execution = this.start(ctx, query, language);
+            final QueryResult res = ctx.getProviderState().getQueryCache().execute(query, language, execution);
+            final long start = System.nanoTime();
+            final NodeIterator nodes = res.getNodes();
+            final Iterator<Resource> resources = new JcrNodeResourceIterator(ctx.getResourceResolver(),
                     null, null,
-                    res.getNodes(),
+                    nodes,
                     ctx.getProviderState().getHelperData(),
-                    this.providerContext.getExcludedPaths());
+                    this.providerContext.getExcludedPaths(),
+                    new JcrNodeResourceIterator.Options().listener(ctx.getProviderState().getResourceFactory()));
+            execution.iterated(System.nanoTime() - start);
+            return execution.track(resources, nodes);
         } catch (final javax.jcr.query.InvalidQueryException iqe) {
             throw new QuerySyntaxException(iqe.getMessage(), query, language, iqe);
         } catch (final RepositoryException re) {
@@ -97,11 +107,13 @@ public class BasicQueryLanguageProvider implements QueryLanguageProvider<JcrProv
         final String queryLanguage = ArrayUtils.contains(getSupportedLanguages(ctx), language) ? language : DEFAULT_QUERY_LANGUAGE;
 
         try {
-            final QueryResult result = JcrResourceUtil.query(ctx.getProviderState().getSession(), query, queryLanguage);
-            final String[] colNames = result.getColumnNames();
+            final QueryStatistics.Execution execution = this.start(ctx, query, queryLanguage);
+            final QueryResult result = ctx.getProviderState().getQueryCache().execute(query, queryLanguage, execution);
+            final long start = System.nanoTime();
+            final JcrRowValueMap.Columns columns = new JcrRowValueMap.Columns(result.getColumnNames());
             final RowIterator rows = result.getRows();
 
-            return new Iterator<ValueMap>() {
+            final Iterator<ValueMap> values = new Iterator<ValueMap>() {
 
                 private ValueMap next;
 
@@ -131,33 +143,7 @@ public class BasicQueryLanguageProvider implements QueryLanguageProvider<JcrProv
                             final Row jcrRow = rows.nextRow();
                             final String resourcePath = jcrRow.getPath();
                             if ( resourcePath != null && providerContext.getExcludedPaths().matches(resourcePath) == null) {
-                                final Map<String, Object> row = new HashMap<>();
-
-                                boolean didPath = false;
-                                boolean didScore = false;
-                                final Value[] values = jcrRow.getValues();
-                                for (int i = 0; i < values.length; i++) {
-                                    Value v = values[i];
-                                    if (v != null) {
-                                        String colName = colNames[i];
-                                        row.put(colName,
-                                            JcrResourceUtil.toJavaObject(values[i]));
-                                        if (colName.equals(QUERY_COLUMN_PATH)) {
-                                            didPath = true;
-                                            row.put(colName, JcrResourceUtil.toJavaObject(values[i]).toString());
-                                        }
-                                        if (colName.equals(QUERY_COLUMN_SCORE)) {
-                                            didScore = true;
-                                        }
-                                    }
-                                }
-                                if (!didPath) {
-                                    row.put(QUERY_COLUMN_PATH, jcrRow.getPath());
-                                }
-                                if (!didScore) {
-                                    row.put(QUERY_COLUMN_SCORE, jcrRow.getScore());
-                                }
-                                result = new ValueMapDecorator(row);
+                                result = new ValueMapDecorator(new JcrRowValueMap(columns, jcrRow));
                             }
                         } catch (final RepositoryException re) {
                             logger.error(
@@ -173,6 +159,8 @@ public class BasicQueryLanguageProvider implements QueryLanguageProvider<JcrProv
                     throw new UnsupportedOperationException("remove");
                 }
             };
+            execution.iterated(System.nanoTime() - start);
+            return execution.track(values, rows);
         } catch (final javax.jcr.query.InvalidQueryException iqe) {
             throw new QuerySyntaxException(iqe.getMessage(), query, language,
                 iqe);
@@ -182,4 +170,10 @@ public class BasicQueryLanguageProvider implements QueryLanguageProvider<JcrProv
 
     }
 
+    private QueryStatistics.Execution start(final ResolveContext<JcrProviderState> ctx,
+            final String query,
+            final String language) {
+        return this.statistics.start(query, language, ctx.getProviderState().getSession().getUserID());
+    }
+
 }
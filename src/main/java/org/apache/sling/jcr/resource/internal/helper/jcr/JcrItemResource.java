@@ -170,4 +170,10 @@ abstract class JcrItemResource<T extends Item> // this should be package private
      */
     abstract Iterator<Resource> listJcrChildren();
 
+    /**
+     * Returns the number of child items, counting at most to <code>max</code>
+     * unless <code>max</code> is negative. No resources are created.
+     */
+    abstract long getJcrChildCount(long max);
+
 }
@@ -18,8 +18,12 @@
  */
 package org.apache.sling.jcr.resource.internal.helper.jcr;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.jcr.Item;
 import javax.jcr.Node;
@@ -29,16 +33,17 @@ import javax.jcr.Session;
 import javax.jcr.version.VersionHistory;
 import javax.jcr.version.VersionManager;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.jcr.resource.internal.AutoSave;
 import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrModifiableValueMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class JcrItemResourceFactory {
+public class JcrItemResourceFactory implements JcrModifiableValueMap.ChangeListener {
 
     /** Default logger */
     private static final Logger log = LoggerFactory.getLogger(JcrItemResourceFactory.class);
@@ -47,9 +52,49 @@ public class JcrItemResourceFactory {
 
     private final HelperData helper;
 
-    public JcrItemResourceFactory(Session session, HelperData helper) {
+    /** Optional cache of resolved items, a <code>null</code> value marks a non existing item. */
+    private final Map<String, Item> itemCache;
+
+    /** Optional cache shared between all resolvers. */
+    private final SharedContentCache sharedCache;
+
+    /** Paths of the nodes changed through this resolver, only tracked for the shared cache. */
+    private final Set<String> changedPaths;
+
+    /** The auto-save of the resolver, <code>null</code> if not enabled. */
+    private final AutoSave autoSave;
+
+    /**
+     * Optional cache of the nearest versionable node by path, a <code>null</code> value marks
+     * a path without versionable node.
+     */
+    private final Map<String, Node> versionableCache;
+
+    /**
+     * Optional cache of the frozen node by version name and versionable path. Labels and
+     * missing versions are not cached, as labels are moved and versions are added without
+     * going through the resolver.
+     */
+    private final Map<String, Node> frozenNodeCache;
+
+    /**
+     * Create a new factory
+     * @param session The session
+     * @param helper The helper data
+     * @param settings The cache settings of the provider
+     * @param autoSave The auto-save counting the properties changed through
+     *                 value maps, might be <code>null</code>
+     */
+    JcrItemResourceFactory(Session session, HelperData helper, ResolverSettings settings, AutoSave autoSave) {
         this.helper = helper;
         this.session = session;
+        final int itemCacheSize = settings.getItemCacheSize();
+        this.itemCache = itemCacheSize > 0 ? new LruCache<Item>(itemCacheSize) : null;
+        this.versionableCache = itemCacheSize > 0 ? new LruCache<Node>(itemCacheSize) : null;
+        this.frozenNodeCache = itemCacheSize > 0 ? new LruCache<Node>(itemCacheSize) : null;
+        this.sharedCache = settings.getSharedCache();
+        this.changedPaths = sharedCache != null ? new HashSet<String>() : null;
+        this.autoSave = autoSave;
     }
 
     /**
@@ -85,6 +130,19 @@ public class JcrItemResourceFactory {
             parentResourcePath = parent.getPath();
         }
 
+        // changes saved by auto-save or batches might not be invalidated yet
+        if (version == null && sharedCache != null && sharedCache.isCacheable(jcrPath)
+                && changedPaths.isEmpty() && !session.hasPendingChanges()) {
+            final SharedContentCache.NodeSnapshot snapshot = sharedCache.get(jcrPath);
+            // the snapshot is only used if the node is readable by this session
+            if (snapshot != null && session.nodeExists(jcrPath)) {
+                log.debug("createResource: Found shared JCR Node Resource at path '{}'", resourcePath);
+                final JcrItemResource<?> resource = new SharedNodeResource(resourceResolver, resourcePath, snapshot, this, helper);
+                resource.getResourceMetadata().setParameterMap(parameters);
+                return resource;
+            }
+        }
+
         Item item;
         if (parentNode != null && resourcePath.startsWith(parentResourcePath)) {
             String subPath = resourcePath.substring(parentResourcePath.length());
@@ -93,7 +151,7 @@ public class JcrItemResourceFactory {
             }
             item = getSubitem(parentNode, subPath);
         } else {
-            item = getItemOrNull(jcrPath);
+            item = getCachedItemOrNull(jcrPath);
         }
 
         if (item != null && version != null) {
@@ -107,7 +165,7 @@ public class JcrItemResourceFactory {
             final JcrItemResource<?> resource;
             if (item.isNode()) {
                 log.debug("createResource: Found JCR Node Resource at path '{}'", resourcePath);
-                resource = new JcrNodeResource(resourceResolver, resourcePath, version, (Node) item, helper);
+                resource = new JcrNodeResource(resourceResolver, resourcePath, version, (Node) item, helper, this);
             } else {
                 log.debug("createResource: Found JCR Property Resource at path '{}'", resourcePath);
                 resource = new JcrPropertyResource(resourceResolver, resourcePath, version, (Property) item);
@@ -118,22 +176,63 @@ public class JcrItemResourceFactory {
     }
 
     private Item getHistoricItem(Item item, String versionSpecifier) throws RepositoryException {
+        final Node versionable = getVersionableAncestor(item);
+        if (versionable == null) {
+            return null;
+        }
+        final Node version = getCachedFrozenNode(versionable, versionSpecifier);
+        if (version != null) {
+            final String path = item.getPath();
+            final String versionablePath = versionable.getPath();
+            return getSubitem(version, path.length() == versionablePath.length() ? "" : path.substring(versionablePath.length() + 1));
+        }
+        return null;
+    }
+
+    /**
+     * Find the nearest versionable node of the item or its ancestors. The
+     * result is cached for the item and all ancestors checked on the way.
+     */
+    private Node getVersionableAncestor(Item item) throws RepositoryException {
+        final List<String> checked = new ArrayList<>();
         Item currentItem = item;
-        LinkedList<String> relPath = new LinkedList<>();
-        Node version = null;
+        Node result = null;
         while (!"/".equals(currentItem.getPath())) {
+            final String path = currentItem.getPath();
+            if (versionableCache != null && versionableCache.containsKey(path)) {
+                result = versionableCache.get(path);
+                break;
+            }
+            checked.add(path);
             if (isVersionable(currentItem)) {
-                version = getFrozenNode((Node) currentItem, versionSpecifier);
+                result = (Node) currentItem;
                 break;
-            } else {
-                relPath.addFirst(currentItem.getName());
-                currentItem = currentItem.getParent();
             }
+            currentItem = currentItem.getParent();
         }
-        if (version != null) {
-            return getSubitem(version, StringUtils.join(relPath.iterator(), '/'));
+        if (versionableCache != null) {
+            for (final String path : checked) {
+                versionableCache.put(path, result);
+            }
         }
-        return null;
+        return result;
+    }
+
+    private Node getCachedFrozenNode(Node node, String versionSpecifier) throws RepositoryException {
+        if (frozenNodeCache == null) {
+            return getFrozenNode(getVersionHistory(node), versionSpecifier);
+        }
+        // paths and version names never contain a null character
+        final String key = versionSpecifier + '\0' + node.getPath();
+        Node frozenNode = frozenNodeCache.get(key);
+        if (frozenNode == null) {
+            final VersionHistory history = getVersionHistory(node);
+            frozenNode = getFrozenNode(history, versionSpecifier);
+            if (frozenNode != null && !history.hasVersionLabel(versionSpecifier)) {
+                frozenNodeCache.put(key, frozenNode);
+            }
+        }
+        return frozenNode;
     }
 
     private static Item getSubitem(Node node, String relPath) throws RepositoryException {
@@ -154,9 +253,12 @@ public class JcrItemResourceFactory {
         }
     }
 
-    private Node getFrozenNode(Node node, String versionSpecifier) throws RepositoryException {
+    private VersionHistory getVersionHistory(Node node) throws RepositoryException {
         final VersionManager versionManager = session.getWorkspace().getVersionManager();
-        final VersionHistory history = versionManager.getVersionHistory(node.getPath());
+        return versionManager.getVersionHistory(node.getPath());
+    }
+
+    private static Node getFrozenNode(VersionHistory history, String versionSpecifier) throws RepositoryException {
         if (history.hasVersionLabel(versionSpecifier)) {
             return history.getVersionByLabel(versionSpecifier).getFrozenNode();
         } else if (history.hasNode(versionSpecifier)) {
@@ -170,6 +272,80 @@ public class JcrItemResourceFactory {
         return item.isNode() && ((Node) item).isNodeType(JcrConstants.MIX_VERSIONABLE);
     }
 
+    Session getSession() {
+        return session;
+    }
+
+    /**
+     * Clear the item cache. This needs to be called whenever items might have
+     * been added, removed or moved or the session has been refreshed.
+     */
+    public void clearCache() {
+        if (itemCache != null) {
+            itemCache.clear();
+            versionableCache.clear();
+            frozenNodeCache.clear();
+        }
+    }
+
+    /**
+     * Record a node added, changed, moved or removed through the resolver.
+     * The shared snapshots of the node and its subtree are invalidated by
+     * {@link #invalidateSharedCache()}.
+     * @param path The path of the node
+     */
+    void nodeChanged(String path) {
+        if (changedPaths != null) {
+            changedPaths.add(path);
+        }
+    }
+
+    /**
+     * Invalidate the shared snapshots of all nodes changed through the
+     * resolver. This is called on commit and revert, as auto-save or batches
+     * might already have saved some of the changes.
+     */
+    void invalidateSharedCache() {
+        if (changedPaths != null && !changedPaths.isEmpty()) {
+            sharedCache.invalidate(changedPaths);
+            changedPaths.clear();
+        }
+    }
+
+    /**
+     * Drop the cached item of a property set or removed through a value map,
+     * it might have been added or removed. Changing the mixin types might
+     * add or remove mix:versionable, so the version lookups are dropped
+     * as well. The change is counted if auto-save is enabled.
+     */
+    @Override
+    public void changed(Node node, String name) throws RepositoryException {
+        final String nodePath = node.getPath();
+        if (itemCache != null) {
+            itemCache.remove("/".equals(nodePath) ? "/" + name : nodePath + '/' + name);
+        }
+        nodeChanged(nodePath);
+        if (versionableCache != null && JcrConstants.JCR_MIXINTYPES.equals(name)) {
+            versionableCache.clear();
+            frozenNodeCache.clear();
+        }
+        if (autoSave != null) {
+            autoSave.modified(1);
+        }
+    }
+
+    private Item getCachedItemOrNull(String path) throws RepositoryException {
+        if (itemCache == null) {
+            return getItemOrNull(path);
+        }
+        Item item = itemCache.get(path);
+        if (item == null && !itemCache.containsKey(path)) {
+            item = getItemOrNull(path);
+            itemCache.put(path, item);
+        }
+        return item;
+    }
+
     Item getItemOrNull(String path) throws RepositoryException {
         // Check first if the path is absolute. If it isn't, then we return null because the previous itemExists method,
         // which was replaced by this method, would have returned null as well (instead of throwing an exception).
@@ -194,4 +370,24 @@ public class JcrItemResourceFactory {
         return item;
     }
 
+    /**
+     * Least recently used cache by path. A resource resolver and therefore
+     * this cache is not used concurrently.
+     */
+    private static final class LruCache<V> extends LinkedHashMap<String, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        LruCache(final int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+            return size() > maxSize;
+        }
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import javax.jcr.ItemExistsException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.nodetype.NodeType;
+
+import org.apache.jackrabbit.util.Text;
+import org.apache.sling.jcr.resource.internal.AutoSave;
+
+/**
+ * Copies a tree of nodes without creating resources or value maps.
+ * <p>
+ * The tree is cloned node by node with the session, including its pending
+ * changes. Like all changes of a resource provider, the copy is only
+ * persisted with the next commit and discarded by a revert.
+ */
+class JcrNodeCopier {
+
+    private final Session session;
+
+    /** The auto-save counting the cloned nodes, if enabled. */
+    private final AutoSave autoSave;
+
+    JcrNodeCopier(final Session session, final AutoSave autoSave) {
+        this.session = session;
+        this.autoSave = autoSave;
+    }
+
+    /**
+     * Copy a node with its subtree
+     * @param srcPath The path of the node
+     * @param destPath The path of the copy
+     * @throws ItemExistsException If a node exists at the destination
+     * @throws RepositoryException If the tree can't be copied
+     */
+    void copy(final String srcPath, final String destPath) throws RepositoryException {
+        if ( destPath.startsWith(srcPath + '/') ) {
+            throw new RepositoryException("Unable to copy " + srcPath + " into its own subtree " + destPath);
+        }
+        final Node parent = this.session.getNode(Text.getRelativeParent(destPath, 1));
+        final String name = Text.getName(destPath);
+        if ( parent.hasNode(name) ) {
+            throw new ItemExistsException(destPath);
+        }
+        this.clone(this.session.getNode(srcPath), parent, name);
+    }
+
+    private void clone(final Node src, final Node parent, final String name) throws RepositoryException {
+        final Node dest = parent.addNode(name, src.getPrimaryNodeType().getName());
+        for(final NodeType mixin : src.getMixinNodeTypes()) {
+            dest.addMixin(mixin.getName());
+        }
+        final PropertyIterator pi = src.getProperties();
+        while ( pi.hasNext() ) {
+            final Property prop = pi.nextProperty();
+            // type, identifier and auto created properties are set by the repository
+            if ( prop.getDefinition().isProtected() ) {
+                continue;
+            }
+            if ( prop.isMultiple() ) {
+                dest.setProperty(prop.getName(), prop.getValues(), prop.getType());
+            } else {
+                dest.setProperty(prop.getName(), prop.getValue());
+            }
+        }
+        if ( this.autoSave != null ) {
+            this.autoSave.modified(1);
+        }
+        final NodeIterator ni = src.getNodes();
+        while ( ni.hasNext() ) {
+            final Node child = ni.nextNode();
+            this.clone(child, dest, child.getName());
+        }
+    }
+}
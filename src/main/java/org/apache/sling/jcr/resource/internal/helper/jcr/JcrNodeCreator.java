@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.jcr.resource.api.BatchResourceCreator;
+import org.apache.sling.jcr.resource.api.JcrResourceConstants;
+import org.apache.sling.jcr.resource.internal.AutoSave;
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrModifiableValueMap;
+import org.apache.sling.jcr.resource.internal.NodeUtil;
+
+/**
+ * Creates nodes for new resources. The parent nodes and the node type
+ * lookups are cached for the lifetime of the creator, so one creator is
+ * used for a single create call or a whole batch.
+ */
+class JcrNodeCreator implements BatchResourceCreator {
+
+    private static final Set<String> IGNORED_PROPERTIES = new HashSet<String>();
+    static {
+        IGNORED_PROPERTIES.add(NodeUtil.MIXIN_TYPES);
+        IGNORED_PROPERTIES.add(NodeUtil.NODE_TYPE);
+        IGNORED_PROPERTIES.add("jcr:created");
+        IGNORED_PROPERTIES.add("jcr:createdBy");
+    }
+
+    /** The maximum number of parent nodes kept. */
+    private static final int PARENT_CACHE_SIZE = 100;
+
+    private final ResourceResolver resolver;
+
+    private final JcrProviderState state;
+
+    /** Whether a resource type is a node type. */
+    private final Map<String, Boolean> nodeTypes = new HashMap<String, Boolean>();
+
+    /** Recently used parents and created nodes by path. */
+    private final Map<String, Node> parents = new LinkedHashMap<String, Node>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Node> eldest) {
+            return size() > PARENT_CACHE_SIZE;
+        }
+    };
+
+    JcrNodeCreator(final ResourceResolver resolver, final JcrProviderState state) {
+        this.resolver = resolver;
+        this.state = state;
+    }
+
+    @Override
+    public int create(final Map<String, Map<String, Object>> resources, final int saveThreshold)
+    throws PersistenceException {
+        this.state.getResourceFactory().clearCache();
+        // with auto-save, the nodes are saved at its threshold only
+        final int threshold = this.state.getAutoSave() != null ? 0 : saveThreshold;
+        int count = 0;
+        for(final Map.Entry<String, Map<String, Object>> entry : resources.entrySet()) {
+            final Node node = this.createNode(entry.getKey(), entry.getValue());
+            this.parents.put(entry.getKey(), node);
+            count++;
+            if ( threshold > 0 && count % threshold == 0 ) {
+                try {
+                    this.state.getSession().save();
+                } catch (final RepositoryException e) {
+                    throw new PersistenceException("Unable to save after creating " + entry.getKey(), e,
+                            entry.getKey(), null);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Create a single resource.
+     * @param path The absolute path
+     * @param properties The optional properties
+     * @return The resource
+     * @throws PersistenceException If the node can't be created
+     */
+    JcrNodeResource createResource(final String path, final Map<String, Object> properties)
+    throws PersistenceException {
+        this.state.getResourceFactory().clearCache();
+        return new JcrNodeResource(this.resolver, path, null, this.createNode(path, properties), this.state.getHelperData(),
+                this.state.getResourceFactory());
+    }
+
+    private Node createNode(final String path, final Map<String, Object> properties)
+    throws PersistenceException {
+        if ( path == null ) {
+            throw new PersistenceException("Unable to create node at " + path, null, path, null);
+        }
+        final String nodeType = this.getNodeType(properties);
+        final Node node;
+        try {
+            final int lastPos = path.lastIndexOf('/');
+            final Node parent = this.getParent(lastPos == 0 ? "/" : path.substring(0, lastPos));
+            final String name = path.substring(lastPos + 1);
+            if ( nodeType != null ) {
+                node = parent.addNode(name, nodeType);
+            } else {
+                node = parent.addNode(name);
+            }
+
+            if ( properties != null ) {
+                final HelperData helper = this.state.getHelperData();
+                final JcrModifiableValueMap jcrMap = new JcrModifiableValueMap(node, helper);
+                // check mixin types first
+                final Object value = properties.get(NodeUtil.MIXIN_TYPES);
+                if ( value != null ) {
+                    jcrMap.putNew(NodeUtil.MIXIN_TYPES, value);
+                }
+                for(final Map.Entry<String, Object> entry : properties.entrySet()) {
+                    if ( !IGNORED_PROPERTIES.contains(entry.getKey()) ) {
+                        try {
+                            jcrMap.putNew(entry.getKey(), entry.getValue());
+                        } catch (final IllegalArgumentException iae) {
+                            removeQuietly(node);
+                            throw new PersistenceException(iae.getMessage(), iae, path, entry.getKey());
+                        }
+                    }
+                }
+            }
+        } catch (final RepositoryException e) {
+            throw new PersistenceException("Unable to create node at " + path, e, path, null);
+        }
+        this.state.getResourceFactory().nodeChanged(path);
+        final AutoSave autoSave = this.state.getAutoSave();
+        if ( autoSave != null ) {
+            try {
+                autoSave.modified(properties == null ? 1 : 1 + properties.size());
+            } catch (final RepositoryException e) {
+                throw new PersistenceException("Unable to save after creating " + path, e, path, null);
+            }
+        }
+        return node;
+    }
+
+    private static void removeQuietly(final Node node) {
+        try {
+            node.remove();
+        } catch ( final RepositoryException re) {
+            // we ignore this
+        }
+    }
+
+    private Node getParent(final String path) throws RepositoryException {
+        Node parent = this.parents.get(path);
+        if ( parent == null ) {
+            final Session session = this.state.getSession();
+            parent = "/".equals(path) ? session.getRootNode() : (Node) session.getItem(path);
+            this.parents.put(path, parent);
+        }
+        return parent;
+    }
+
+    /**
+     * Get the node type from the properties, either set directly or as
+     * the resource type, if that is a registered node type.
+     */
+    private String getNodeType(final Map<String, Object> properties) {
+        final Object nodeObj = (properties != null ? properties.get(NodeUtil.NODE_TYPE) : null);
+        if ( nodeObj != null ) {
+            return nodeObj.toString();
+        }
+        final Object rtObj = (properties != null ? properties.get(JcrResourceConstants.SLING_RESOURCE_TYPE_PROPERTY) : null);
+        if ( rtObj != null ) {
+            final String resourceType = rtObj.toString();
+            if ( resourceType.indexOf(':') != -1 && resourceType.indexOf('/') == -1 ) {
+                Boolean isNodeType = this.nodeTypes.get(resourceType);
+                if ( isNodeType == null ) {
+                    try {
+                        this.state.getSession().getWorkspace().getNodeTypeManager().getNodeType(resourceType);
+                        isNodeType = true;
+                    } catch (final RepositoryException ignore) {
+                        // we expect this, if this isn't a valid node type, therefore ignoring
+                        isNodeType = false;
+                    }
+                    this.nodeTypes.put(resourceType, isNodeType);
+                }
+                if ( isNodeType ) {
+                    return resourceType;
+                }
+            }
+        }
+        return null;
+    }
+}
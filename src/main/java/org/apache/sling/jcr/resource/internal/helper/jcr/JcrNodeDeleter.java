@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.nodetype.NodeDefinition;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.jcr.resource.api.BulkResourceDeleter;
+import org.apache.sling.jcr.resource.internal.AutoSave;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletes a subtree bottom-up, one node at a time. The traversal always
+ * descends into the first child which is removable or has removable
+ * descendants, so only the nodes on the path from the root to the current
+ * node are kept, however large the subtree is. Mandatory and protected
+ * nodes are not removed on their own, but their removable descendants are,
+ * and they are removed together with their parent.
+ */
+class JcrNodeDeleter implements BulkResourceDeleter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JcrNodeDeleter.class);
+
+    private final JcrProviderState state;
+
+    JcrNodeDeleter(final JcrProviderState state) {
+        this.state = state;
+    }
+
+    @Override
+    public long delete(final String path, final int batchSize, final ProgressListener listener)
+    throws PersistenceException {
+        this.state.getResourceFactory().clearCache();
+        try {
+            return this.delete(this.state.getSession().getNode(path), path, batchSize, listener, null);
+        } catch (final RepositoryException e) {
+            throw new PersistenceException("Unable to delete resource", e, path, null);
+        }
+    }
+
+    /**
+     * Delete a subtree, counting each node removed for auto-save.
+     * @param root The root of the subtree
+     * @param autoSave The auto-save
+     * @throws RepositoryException If a node can't be removed or saving fails
+     */
+    void delete(final Node root, final AutoSave autoSave) throws RepositoryException {
+        this.delete(root, root.getPath(), 0, null, autoSave);
+    }
+
+    private long delete(final Node root,
+            final String path,
+            final int batchSize,
+            final ProgressListener listener,
+            final AutoSave autoSave) throws RepositoryException {
+        this.state.getResourceFactory().nodeChanged(path);
+        long count = 0;
+        int depth = 0;
+        Node current = root;
+        while ( true ) {
+            final Node child = getRemovableChild(current);
+            if ( child != null ) {
+                current = child;
+                depth++;
+                continue;
+            }
+            final Node parent = depth == 0 ? null : current.getParent();
+            if ( depth > 0 && !isRemovable(current) ) {
+                // removed with its parent
+                current = parent;
+                depth--;
+                continue;
+            }
+            current.remove();
+            count++;
+            if ( autoSave != null ) {
+                autoSave.modified(1);
+            } else if ( batchSize > 0 && count % batchSize == 0 ) {
+                this.state.getSession().save();
+                LOGGER.debug("Deleted {} nodes below {}", count, path);
+                if ( listener != null ) {
+                    listener.deleted(path, count);
+                }
+            }
+            if ( depth == 0 ) {
+                break;
+            }
+            current = parent;
+            depth--;
+        }
+        if ( listener != null && (batchSize <= 0 || count % batchSize != 0) ) {
+            listener.deleted(path, count);
+        }
+        return count;
+    }
+
+    /**
+     * Get the first child which can be removed on its own or which has
+     * descendants which can be removed on their own.
+     */
+    private static Node getRemovableChild(final Node node) throws RepositoryException {
+        final NodeIterator children = node.getNodes();
+        while ( children.hasNext() ) {
+            final Node child = children.nextNode();
+            if ( isRemovable(child) || getRemovableChild(child) != null ) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the node can be removed on its own, that is whether it is
+     * neither mandatory nor protected.
+     */
+    private static boolean isRemovable(final Node node) throws RepositoryException {
+        final NodeDefinition definition = node.getDefinition();
+        return !definition.isMandatory() && !definition.isProtected();
+    }
+}
@@ -24,12 +24,15 @@ import static org.apache.jackrabbit.JcrConstants.NT_LINKEDFILE;
 import java.io.InputStream;
 import java.net.URI;
 import java.security.AccessControlException;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import javax.jcr.Item;
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
@@ -38,11 +41,13 @@ import org.apache.sling.adapter.annotations.Adaptable;
 import org.apache.sling.adapter.annotations.Adapter;
 import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.resource.external.ExternalizableInputStream;
 import org.apache.sling.api.resource.external.URIProvider;
 import org.apache.sling.jcr.resource.api.JcrResourceConstants;
+import org.apache.sling.jcr.resource.api.PagedChildren;
 import org.apache.sling.jcr.resource.internal.HelperData;
 import org.apache.sling.jcr.resource.internal.JcrModifiableValueMap;
 import org.apache.sling.jcr.resource.internal.JcrValueMap;
@@ -51,7 +56,7 @@ import org.slf4j.LoggerFactory;
 
 /** A Resource that wraps a JCR Node */
 @Adaptable(adaptableClass=Resource.class, adapters={
-        @Adapter({Node.class, Map.class, Item.class, ValueMap.class}),
+        @Adapter({Node.class, Map.class, Item.class, ValueMap.class, PagedChildren.class}),
         @Adapter(value=InputStream.class, condition="If the resource is a JcrNodeResource and has a jcr:data property or is an nt:file node."),
         @Adapter(value=ExternalizableInputStream.class, condition="If the resource is a JcrNodeResource and has a jcr:data property or is an nt:file node, and can be read using a secure URL.")
 })
@@ -69,6 +74,12 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
 
     private final HelperData helper;
 
+    /** The listener informed about changes through a modifiable value map, might be <code>null</code>. */
+    private final JcrModifiableValueMap.ChangeListener listener;
+
+    /** The value map with prefetched properties, handed out on the first adaptTo. */
+    private JcrValueMap prefetchedValueMap;
+
     /**
      * Constructor
      * @param resourceResolver
@@ -82,11 +93,62 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
                            final String version,
                            final Node node,
                            final HelperData helper) {
-        super(resourceResolver, path, version, node, new JcrNodeResourceMetadata(node));
+        this(resourceResolver, path, version, node, helper, null);
+    }
+
+    /**
+     * Constructor
+     * @param resourceResolver
+     * @param path The path of the resource
+     * @param node The Node underlying this resource
+     * @param helper The helper data
+     * @param listener The listener informed about changes through a modifiable
+     *                 value map, might be <code>null</code>
+     */
+    JcrNodeResource(final ResourceResolver resourceResolver,
+                    final String path,
+                    final String version,
+                    final Node node,
+                    final HelperData helper,
+                    final JcrModifiableValueMap.ChangeListener listener) {
+        this(resourceResolver, path, version, node, new JcrNodeResourceMetadata(node), helper, listener);
+    }
+
+    /**
+     * Constructor for subclasses providing their own metadata
+     * @param resourceResolver
+     * @param path The path of the resource
+     * @param node The Node underlying this resource, might be <code>null</code>
+     *             if the subclass provides the node lazily
+     * @param metadata The resource metadata
+     * @param helper The helper data
+     * @param listener The listener informed about changes through a modifiable
+     *                 value map, might be <code>null</code>
+     */
+    JcrNodeResource(final ResourceResolver resourceResolver,
+                    final String path,
+                    final String version,
+                    final Node node,
+                    final ResourceMetadata metadata,
+                    final HelperData helper,
+                    final JcrModifiableValueMap.ChangeListener listener) {
+        super(resourceResolver, path, version, node, metadata);
         this.helper = helper;
+        this.listener = listener;
         this.resourceSuperType = UNSET_RESOURCE_SUPER_TYPE;
     }
 
+    /**
+     * Read the properties of the node into the value map returned by the
+     * next adaption to a {@link ValueMap}.
+     * @param keys The keys of the properties to read, {@code null} for all properties
+     */
+    void prefetch(final String[] keys) {
+        final JcrValueMap valueMap = new JcrValueMap(getNode(), this.helper);
+        valueMap.prefetch(keys);
+        this.prefetchedValueMap = valueMap;
+    }
+
     /**
      * @see org.apache.sling.api.resource.Resource#getResourceType()
      */
@@ -132,13 +194,31 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
         } else if (type == InputStream.class) {
             return (Type) getInputStream(); // unchecked cast
         } else if (type == Map.class || type == ValueMap.class) {
+            final JcrValueMap prefetched = this.prefetchedValueMap;
+            if (prefetched != null) {
+                this.prefetchedValueMap = null;
+                return (Type) prefetched; // unchecked cast
+            }
             return (Type) new JcrValueMap(getNode(), this.helper); // unchecked cast
+        } else if (type == PagedChildren.class) {
+            return (Type) new PagedChildren() { // unchecked cast
+
+                @Override
+                public Iterator<Resource> listChildren(final long offset, final long limit) {
+                    return listJcrChildren(offset, limit);
+                }
+
+                @Override
+                public long getChildCount(final long max) {
+                    return getJcrChildCount(max);
+                }
+            };
         } else if (type == ModifiableValueMap.class ) {
             // check write
             try {
                 getNode().getSession().checkPermission(getPath(),
                     "set_property");
-                return (Type) new JcrModifiableValueMap(getNode(), this.helper);
+                return (Type) new JcrModifiableValueMap(getNode(), this.helper, this.listener);
             } catch (AccessControlException ace) {
                 // the user has no write permission, cannot adapt
                 LOGGER.debug(
@@ -246,12 +326,51 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
 
     // ---------- Descendable interface ----------------------------------------
 
+    /**
+     * Checks the child nodes directly instead of creating an iterator over
+     * the child resources. Only if there are no child nodes, the resolver
+     * is asked, as other resource providers might provide children.
+     */
+    @Override
+    public boolean hasChildren() {
+        try {
+            if (getNode().hasNodes()) {
+                return true;
+            }
+        } catch (final RepositoryException re) {
+            LOGGER.error("hasChildren: Cannot check children of " + this, re);
+        }
+        return getResourceResolver() != null && getResourceResolver().hasChildren(this);
+    }
+
+    @Override
+    long getJcrChildCount(final long max) {
+        try {
+            final NodeIterator nodes = getNode().getNodes();
+            final long size = nodes.getSize();
+            if (size >= 0) {
+                return max >= 0 ? Math.min(size, max) : size;
+            }
+            // size unknown, skip through the nodes without creating them
+            long count = 0;
+            while ((max < 0 || count < max) && nodes.hasNext()) {
+                nodes.skip(1);
+                count++;
+            }
+            return count;
+        } catch (final RepositoryException re) {
+            LOGGER.error("getChildCount: Cannot count children of " + this, re);
+        }
+        return 0;
+    }
+
     @Override
     Iterator<Resource> listJcrChildren() {
         try {
             if (getNode().hasNodes()) {
                 return new JcrNodeResourceIterator(getResourceResolver(), path, version,
-                    getNode().getNodes(), this.helper, null);
+                    getNode().getNodes(), this.helper, null, new JcrNodeResourceIterator.Options()
+                        .listener(this.listener).prefetch(this.helper.isChildPrefetch()));
             }
         } catch (final RepositoryException re) {
             LOGGER.error("listChildren: Cannot get children of " + this, re);
@@ -259,4 +378,37 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
 
         return null;
     }
+
+    /**
+     * List a window of the children. The skipped child nodes are not
+     * turned into resources.
+     * @param offset The number of children to skip
+     * @param limit The maximum number of children, negative for no limit
+     * @return The children
+     */
+    Iterator<Resource> listJcrChildren(final long offset, final long limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        try {
+            if (limit != 0 && getNode().hasNodes()) {
+                final NodeIterator nodes = getNode().getNodes();
+                if (offset > 0) {
+                    try {
+                        nodes.skip(offset);
+                    } catch (final NoSuchElementException nsee) {
+                        // offset is beyond the last child
+                        return Collections.<Resource>emptyList().iterator();
+                    }
+                }
+                return new JcrNodeResourceIterator(getResourceResolver(), path, version,
+                    nodes, this.helper, null, new JcrNodeResourceIterator.Options().limit(limit)
+                        .listener(this.listener).prefetch(this.helper.isChildPrefetch()));
+            }
+        } catch (final RepositoryException re) {
+            LOGGER.error("listChildren: Cannot get children of " + this, re);
+        }
+
+        return Collections.<Resource>emptyList().iterator();
+    }
 }
@@ -29,6 +29,7 @@ import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.path.PathSet;
 import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrModifiableValueMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +38,8 @@ import org.slf4j.LoggerFactory;
  * which returns resources for each node of an underlying
  * <code>NodeIterator</code>. Nodes in the node iterator which cannot be
  * accessed or for which a resource cannot be created are skipped.
+ * If prefetching is requested when listing children, the properties of
+ * each node configured in the {@link HelperData} are read while iterating.
  */
 public class JcrNodeResourceIterator implements Iterator<Resource> {
 
@@ -60,6 +63,18 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
 
     private final PathSet excludedPaths;
 
+    /** The maximum number of resources to return, negative for no limit. */
+    private final long limit;
+
+    /** The number of resources returned so far, including the prefetched one. */
+    private long count;
+
+    /** The listener passed to the resources, might be <code>null</code>. */
+    private final JcrModifiableValueMap.ChangeListener listener;
+
+    /** Whether to prefetch the properties of the resources. */
+    private final boolean prefetch;
+
     /**
      * Creates an instance using the given resource manager and the nodes
      * provided as a node iterator. Paths of the iterated resources will be
@@ -71,13 +86,19 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
      * @param nodes the node iterator
      * @param helper the helper
      * @param excludedPaths the set of excluded paths
+     * @param options the options, <code>null</code> for the defaults
      */
     public JcrNodeResourceIterator(final ResourceResolver resourceResolver,
                                    final String parentPath,
                                    final String parentVersion,
                                    final NodeIterator nodes,
                                    final HelperData helper,
-                                   final PathSet excludedPaths) {
+                                   final PathSet excludedPaths,
+                                   final Options options) {
+        final Options opts = options == null ? new Options() : options;
+        this.limit = opts.limit;
+        this.listener = opts.listener;
+        this.prefetch = opts.prefetch;
         this.resourceResolver = resourceResolver;
         this.parentPath = parentPath;
         this.parentVersion = parentVersion;
@@ -113,14 +134,27 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
     }
 
     private Resource seek() {
+        if (limit >= 0 && count >= limit) {
+            LOGGER.debug("seek: Limit of {} resources reached", limit);
+            return null;
+        }
         while (nodes.hasNext()) {
             try {
                 final Node n = nodes.nextNode();
                 final String path = getPath(n);
                 if ( path != null && this.excludedPaths.matches(path) == null ) {
-                    final Resource resource = new JcrNodeResource(resourceResolver,
-                        path, parentVersion, n, helper);
+                    final JcrNodeResource resource = new JcrNodeResource(resourceResolver,
+                        path, parentVersion, n, helper, listener);
+                    if ( this.prefetch ) {
+                        try {
+                            resource.prefetch(helper.getChildPrefetchKeys());
+                        } catch (final Throwable t) {
+                            // the properties are read again when accessed
+                            LOGGER.warn("seek: Unable to prefetch properties of " + path, t);
+                        }
+                    }
                     LOGGER.debug("seek: Returning Resource {}", resource);
+                    count++;
                     return resource;
                 }
             } catch (final Throwable t) {
@@ -144,4 +178,45 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
         }
         return path;
     }
+
+    /**
+     * The optional settings of a {@link JcrNodeResourceIterator}. By default
+     * there is no limit, no listener and no prefetching.
+     */
+    public static final class Options {
+
+        private long limit = -1;
+
+        private JcrModifiableValueMap.ChangeListener listener;
+
+        private boolean prefetch;
+
+        /**
+         * @param limit the maximum number of resources, negative for no limit
+         * @return this options
+         */
+        public Options limit(final long limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * @param listener the listener informed about changes through a modifiable
+         *                 value map of the resources, might be <code>null</code>
+         * @return this options
+         */
+        public Options listener(final JcrModifiableValueMap.ChangeListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * @param prefetch whether to prefetch the properties of the resources
+         * @return this options
+         */
+        public Options prefetch(final boolean prefetch) {
+            this.prefetch = prefetch;
+            return this;
+        }
+    }
 }
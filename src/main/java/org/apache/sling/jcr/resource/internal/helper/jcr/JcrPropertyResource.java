@@ -231,6 +231,11 @@ class JcrPropertyResource extends JcrItemResource<Property> { // this should be
         return null;
     }
 
+    @Override
+    long getJcrChildCount(final long max) {
+        return 0;
+    }
+
     @Override
 	public boolean hasChildren() {
 		return false;
@@ -24,6 +24,7 @@ import java.io.IOException;
 import javax.jcr.Session;
 
 import org.apache.sling.jcr.api.SlingRepository;
+import org.apache.sling.jcr.resource.internal.AutoSave;
 import org.apache.sling.jcr.resource.internal.HelperData;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
@@ -42,21 +43,45 @@ class JcrProviderState implements Closeable {
 
     private final HelperData helperData;
 
-    JcrProviderState(final Session session, final HelperData helperData, final boolean logout) {
-        this(session, helperData, logout, null, null);
-    }
+    /** The pool the session is returned to on logout, if any. */
+    private final ServiceSessionPool sessionPool;
+
+    private final String poolKey;
+
+    /** The auto-save, if enabled for the resource resolver. */
+    private final AutoSave autoSave;
 
+    /** The prepared queries, created on first use. */
+    private QueryCache queryCache;
+
+    /**
+     * Create a new state
+     * @param session The session of the resource resolver
+     * @param helperData The helper data
+     * @param logout Whether the session is logged out with the state
+     * @param bundleContext The bundle context of the calling bundle, might be <code>null</code>
+     * @param repositoryRef The repository service to release on logout, might be <code>null</code>
+     * @param settings The settings of the provider
+     * @param poolKey The key to return the session to the session pool, <code>null</code> if not pooled
+     * @param autoSave The auto-save of the resource resolver, might be <code>null</code>
+     */
     JcrProviderState(final Session session,
             final HelperData helperData,
             final boolean logout,
             final BundleContext bundleContext,
-            final ServiceReference<SlingRepository> repositoryRef) {
+            final ServiceReference<SlingRepository> repositoryRef,
+            final ResolverSettings settings,
+            final String poolKey,
+            final AutoSave autoSave) {
         this.session = session;
         this.bundleContext = bundleContext;
         this.repositoryRef = repositoryRef;
         this.logout = logout;
         this.helperData = helperData;
-        this.resourceFactory = new JcrItemResourceFactory(session, helperData);
+        this.sessionPool = poolKey == null ? null : settings.getSessionPool();
+        this.poolKey = poolKey;
+        this.autoSave = autoSave;
+        this.resourceFactory = new JcrItemResourceFactory(session, helperData, settings, autoSave);
     }
 
     Session getSession() {
@@ -71,12 +96,34 @@ class JcrProviderState implements Closeable {
         return helperData;
     }
 
+    /**
+     * @return The auto-save or {@code null} if not enabled
+     */
+    AutoSave getAutoSave() {
+        return autoSave;
+    }
+
+    QueryCache getQueryCache() {
+        if (queryCache == null) {
+            queryCache = new QueryCache(session, helperData == null ? 0 : helperData.getQueryCacheSize());
+        }
+        return queryCache;
+    }
+
     @Override
     public void close() throws IOException {
         logout();
     }
 
     void logout() {
+        if (autoSave != null) {
+            autoSave.close();
+        }
+        if (sessionPool != null) {
+            // the pool keeps the repository service until the session is evicted
+            sessionPool.release(poolKey, session, bundleContext);
+            return;
+        }
         if (logout) {
             session.logout();
         }
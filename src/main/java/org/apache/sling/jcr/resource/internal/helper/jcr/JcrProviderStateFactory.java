@@ -22,7 +22,6 @@ import static org.apache.sling.api.resource.ResourceResolverFactory.NEW_PASSWORD
 
 import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -35,10 +34,10 @@ import javax.jcr.SimpleCredentials;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
-import org.apache.sling.api.resource.external.URIProvider;
-import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.jcr.api.SlingRepository;
 import org.apache.sling.jcr.resource.api.JcrResourceConstants;
+import org.apache.sling.jcr.resource.internal.AutoSave;
+import org.apache.sling.jcr.resource.internal.AutoSaveStatistics;
 import org.apache.sling.jcr.resource.internal.HelperData;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
 import org.osgi.framework.Bundle;
@@ -55,17 +54,20 @@ public class JcrProviderStateFactory {
 
     private final SlingRepository repository;
 
-    private final AtomicReference<DynamicClassLoaderManager> dynamicClassLoaderManagerReference;
-    private final AtomicReference<URIProvider[]> uriProviderReference;
+    /** The helper data shared by all provider states. */
+    private final HelperData helperData;
 
-    public JcrProviderStateFactory(final ServiceReference<SlingRepository> repositoryReference,
+    /** The settings applied to each provider state. */
+    private final ResolverSettings settings;
+
+    JcrProviderStateFactory(final ServiceReference<SlingRepository> repositoryReference,
             final SlingRepository repository,
-            final AtomicReference<DynamicClassLoaderManager> dynamicClassLoaderManagerReference,
-                                   final AtomicReference<URIProvider[]> uriProviderReference) {
+            final HelperData helperData,
+            final ResolverSettings settings) {
         this.repository = repository;
         this.repositoryReference = repositoryReference;
-        this.dynamicClassLoaderManagerReference = dynamicClassLoaderManagerReference;
-        this.uriProviderReference = uriProviderReference;
+        this.helperData = helperData;
+        this.settings = settings;
     }
 
     /** Get the calling Bundle from auth info, fail if not provided
@@ -94,10 +96,22 @@ public class JcrProviderStateFactory {
         }
 
         BundleContext bc = null;
+        String poolKey = null;
         try {
             final Bundle bundle = extractCallingBundle(authenticationInfo);
             if (bundle != null) {
                 bc = bundle.getBundleContext();
+                final Object subService = authenticationInfo.get(ResourceResolverFactory.SUBSERVICE);
+                final String subServiceName = subService instanceof String ? (String) subService : null;
+                final ServiceSessionPool sessionPool = this.settings.getSessionPool();
+                // impersonated sessions are not pooled
+                if (sessionPool != null && !isLoginAdministrative && getSudoUser(authenticationInfo) == null) {
+                    poolKey = ServiceSessionPool.getKey(bundle, subServiceName);
+                    final Session pooled = sessionPool.borrow(poolKey, bc);
+                    if (pooled != null) {
+                        return createJcrProviderState(pooled, true, authenticationInfo, bc, poolKey);
+                    }
+                }
                 final SlingRepository repo = bc.getService(repositoryReference);
                 if (repo == null) {
                     logger.warn("Cannot login {} because cannot get SlingRepository on behalf of bundle {} ({})",
@@ -111,8 +125,6 @@ public class JcrProviderStateFactory {
                     if (isLoginAdministrative) {
                         session = repo.loginAdministrative(null);
                     } else {
-                        final Object subService = authenticationInfo.get(ResourceResolverFactory.SUBSERVICE);
-                        final String subServiceName = subService instanceof String ? (String) subService : null;
                         session = repo.loginService(subServiceName, null);
                     }
                 } catch (Throwable t) {
@@ -136,7 +148,7 @@ public class JcrProviderStateFactory {
             throw getLoginException(re);
         }
 
-        return createJcrProviderState(session, true, authenticationInfo, bc);
+        return createJcrProviderState(session, true, authenticationInfo, bc, poolKey);
     }
 
     private JcrProviderState createJcrProviderState(
@@ -144,10 +156,34 @@ public class JcrProviderStateFactory {
             final boolean logoutSession,
             @Nonnull final Map<String, Object> authenticationInfo,
             @Nullable final BundleContext ctx
+    ) throws LoginException {
+        return createJcrProviderState(s, logoutSession, authenticationInfo, ctx, null);
+    }
+
+    private JcrProviderState createJcrProviderState(
+            @Nonnull final Session s,
+            final boolean logoutSession,
+            @Nonnull final Map<String, Object> authenticationInfo,
+            @Nullable final BundleContext ctx,
+            @Nullable final String poolKey
     ) throws LoginException {
         final Session session = handleImpersonation(s, authenticationInfo, logoutSession);
-        final HelperData data = new HelperData(this.dynamicClassLoaderManagerReference, this.uriProviderReference);
-        return new JcrProviderState(session, data, logoutSession, ctx, ctx == null ? null : repositoryReference);
+        AutoSave autoSave = null;
+        final AutoSaveStatistics autoSaveStatistics = this.settings.getAutoSaveStatistics();
+        if (isAutoSave(authenticationInfo) && autoSaveStatistics != null
+                && autoSaveStatistics.getAutoSaveThreshold() > 0) {
+            autoSave = new AutoSave(session, autoSaveStatistics.getAutoSaveThreshold(), autoSaveStatistics);
+        }
+        return new JcrProviderState(session, this.helperData, logoutSession, ctx, ctx == null ? null : repositoryReference,
+                this.settings, poolKey, autoSave);
+    }
+
+    private static boolean isAutoSave(final Map<String, Object> authenticationInfo) {
+        final Object value = authenticationInfo.get(JcrResourceConstants.AUTHENTICATION_INFO_AUTO_SAVE);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value != null && Boolean.parseBoolean(value.toString());
     }
 
     /**
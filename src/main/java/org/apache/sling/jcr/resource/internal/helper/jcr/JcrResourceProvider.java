@@ -23,11 +23,15 @@ import java.io.IOException;
 import java.security.Principal;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.CheckForNull;
@@ -50,19 +54,27 @@ import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.external.URIProvider;
 import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.jcr.api.SlingRepository;
+import org.apache.sling.jcr.resource.api.BatchResourceCreator;
+import org.apache.sling.jcr.resource.api.BulkResourceDeleter;
 import org.apache.sling.jcr.resource.api.JcrResourceConstants;
+import org.apache.sling.jcr.resource.internal.AutoSave;
+import org.apache.sling.jcr.resource.internal.AutoSaveStatistics;
+import org.apache.sling.jcr.resource.internal.AutoSaveStatisticsMBean;
+import org.apache.sling.jcr.resource.internal.HelperData;
 import org.apache.sling.jcr.resource.internal.JcrListenerBaseConfig;
-import org.apache.sling.jcr.resource.internal.JcrModifiableValueMap;
 import org.apache.sling.jcr.resource.internal.JcrResourceListener;
-import org.apache.sling.jcr.resource.internal.NodeUtil;
+import org.apache.sling.jcr.resource.internal.ObservationStatistics;
+import org.apache.sling.jcr.resource.internal.ObservationStatisticsMBean;
 import org.apache.sling.spi.resource.provider.ObserverConfiguration;
 import org.apache.sling.spi.resource.provider.ProviderContext;
 import org.apache.sling.spi.resource.provider.QueryLanguageProvider;
 import org.apache.sling.spi.resource.provider.ResolveContext;
 import org.apache.sling.spi.resource.provider.ResourceContext;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
+import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -70,9 +82,13 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+@Designate(ocd = JcrResourceProvider.Config.class)
 @Component(name="org.apache.sling.jcr.resource.internal.helper.jcr.JcrResourceProviderFactory",
            service = ResourceProvider.class,
            property = {
@@ -87,19 +103,107 @@ import org.slf4j.LoggerFactory;
            })
 public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
 
+    @ObjectClassDefinition(
+            name = "Apache Sling JCR Resource Provider",
+            description = "Provides access to the resources stored in the JCR repository")
+    public @interface Config {
+
+        @AttributeDefinition(name = "Resource Cache Size",
+                description = "Maximum number of items (including not existing paths) and version lookups cached per "
+                        + "resource resolver. The cache is cleared on commit, revert, refresh and on each create, delete "
+                        + "or move through the resource resolver. Changes made directly through the JCR session are not "
+                        + "detected. Version labels are always resolved. A value of 0 disables the cache.")
+        int resource_cache_size() default 0;
+
+        @AttributeDefinition(name = "Shared Cache Paths",
+                description = "Path prefixes of content which rarely changes, like /libs and /apps. Nodes below these "
+                        + "paths which are readable by everyone are cached once and shared between all resource "
+                        + "resolvers. The cache is invalidated through observation and on commit. The content is "
+                        + "read with the service user mapped to the 'sharedcache' subservice, which needs the "
+                        + "jcr:read and jcr:readAccessControl privileges on these paths and their ancestors. "
+                        + "Leave empty to disable the cache.")
+        String[] shared_cache_paths() default {};
+
+        @AttributeDefinition(name = "Shared Cache Size",
+                description = "Maximum number of nodes kept in the shared cache.")
+        int shared_cache_size() default 10000;
+
+        @AttributeDefinition(name = "Single Observation Listener",
+                description = "If enabled, a single JCR observation listener is registered for the union of all "
+                        + "resource observer configurations and each change is dispatched to the matching "
+                        + "configurations. The JCR filter of the single listener merges the change types and "
+                        + "external flags of all configurations and does not apply excluded paths, so the repository "
+                        + "delivers more events which are dropped by the listener. Each configuration still only "
+                        + "receives the changes it would receive from its own listener. Otherwise one JCR listener "
+                        + "is registered per configuration.")
+        boolean observation_single_listener() default false;
+
+        @AttributeDefinition(name = "Asynchronous Observation",
+                description = "If enabled, resource changes are handed over to a dedicated thread which reports "
+                        + "them to the observers, so the JCR observation thread is not blocked by slow observers.")
+        boolean observation_async() default false;
+
+        @AttributeDefinition(name = "Asynchronous Observation Window",
+                description = "Time in milliseconds changes are collected before they are reported. Repeated "
+                        + "changes of the same type for the same path within this window are reported once.")
+        int observation_async_window() default 100;
+
+        @AttributeDefinition(name = "Asynchronous Observation Queue Size",
+                description = "Maximum number of pending changes. If the queue is full, further changes are "
+                        + "merged into a change of their common ancestor per observer, change type, observed "
+                        + "path, user and external flag until the pending changes have been handed over to the "
+                        + "observers. The merged change is never outside of the observed paths.")
+        int observation_async_queue_size() default 10000;
+
+        @AttributeDefinition(name = "Service Session Pool Size",
+                description = "Maximum number of idle service sessions kept per calling bundle and subservice. "
+                        + "Sessions of closed service resource resolvers are refreshed and reused for the next "
+                        + "service resource resolver of the same bundle and subservice. Impersonated sessions are "
+                        + "not pooled. A value of 0 disables the pool.")
+        int service_session_pool_size() default 0;
+
+        @AttributeDefinition(name = "Service Session Pool Idle Timeout",
+                description = "Time in seconds after which an idle pooled service session is logged out. "
+                        + "Changes of the service user's permissions only apply to pooled sessions "
+                        + "once they are evicted.")
+        int service_session_pool_idle_timeout() default 60;
+
+        @AttributeDefinition(name = "Prefetch Child Properties",
+                description = "If enabled, the properties of each child resource are read while listing the "
+                        + "children, so adapting the children to a value map does not read them one by one.")
+        boolean listing_prefetch() default false;
+
+        @AttributeDefinition(name = "Prefetched Child Properties",
+                description = "Names of the properties read while listing children. Other properties are read "
+                        + "on demand. Leave empty to read all properties.")
+        String[] listing_prefetch_properties() default {};
+
+        @AttributeDefinition(name = "Query Cache Size",
+                description = "Maximum number of prepared queries kept per resource resolver and reused when "
+                        + "the same statement is executed again. Limit, offset and bind values may be passed "
+                        + "with a trailing hint comment like /* limit=10, offset=20, $name=value */. "
+                        + "A value of 0 disables the cache.")
+        int query_cache_size() default 0;
+
+        @AttributeDefinition(name = "Slow Query Threshold",
+                description = "Time in milliseconds a query may take, including reading all results, before it "
+                        + "is logged as a slow query with its statement, language and user. Enable debug logging "
+                        + "to include where the query was executed. A value of 0 disables the slow query log.")
+        long query_slow_threshold() default 0;
+
+        @AttributeDefinition(name = "Auto-Save Threshold",
+                description = "Number of modifications after which the session of a resource resolver is saved, "
+                        + "if the resource resolver enabled auto-save with the user.jcr.autosave authentication "
+                        + "info property. This bounds the memory used by large imports and deletions. "
+                        + "A value of 0 disables auto-save for all resource resolvers.")
+        int auto_save_threshold() default 1000;
+    }
+
     /** Logger */
     private final Logger logger = LoggerFactory.getLogger(JcrResourceProvider.class);
 
     private static final String REPOSITORY_REFERNENCE_NAME = "repository";
 
-    private static final Set<String> IGNORED_PROPERTIES = new HashSet<String>();
-    static {
-        IGNORED_PROPERTIES.add(NodeUtil.MIXIN_TYPES);
-        IGNORED_PROPERTIES.add(NodeUtil.NODE_TYPE);
-        IGNORED_PROPERTIES.add("jcr:created");
-        IGNORED_PROPERTIES.add("jcr:createdBy");
-    }
-
     @Reference(name = REPOSITORY_REFERNENCE_NAME, service = SlingRepository.class)
     private ServiceReference<SlingRepository> repositoryReference;
 
@@ -109,18 +213,51 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
     /** The JCR observation listeners. */
     private final Map<ObserverConfiguration, Closeable> listeners = new HashMap<>();
 
+    /** The single JCR observation listener for all configurations, if enabled. */
+    private volatile JcrResourceListener combinedListener;
+
+    private volatile boolean singleListener;
+
+    private volatile int asyncWindow;
+
+    /** The queue size for asynchronous observation, <code>0</code> for synchronous observation. */
+    private volatile int asyncQueueSize;
+
+    /** The statistics of the observation listeners. */
+    private final ObservationStatistics observationStatistics = new ObservationStatistics();
+
+    /** The statistics of the queries. */
+    private final QueryStatistics queryStatistics = new QueryStatistics();
+
+    /** The statistics of the auto-saves. */
+    private final AutoSaveStatistics autoSaveStatistics = new AutoSaveStatistics();
+
+    /** The registrations of the MBeans. */
+    private final List<ServiceRegistration<?>> mbeanRegistrations = new CopyOnWriteArrayList<ServiceRegistration<?>>();
+
     private final Map<URIProvider, URIProvider> providers = new ConcurrentHashMap<URIProvider, URIProvider>();
 
     private volatile SlingRepository repository;
 
     private volatile JcrProviderStateFactory stateFactory;
 
+    /** The optional cache shared between all resolvers. */
+    private volatile SharedContentCache sharedCache;
+
+    /** The optional pool of service sessions. */
+    private volatile ServiceSessionPool sessionPool;
+
     private final AtomicReference<DynamicClassLoaderManager> classLoaderManagerReference = new AtomicReference<DynamicClassLoaderManager>();
 
     private AtomicReference<URIProvider[]> uriProviderReference = new AtomicReference<URIProvider[]>();
 
+    /** The helper data shared by all resource resolvers. */
+    private final HelperData helperData = new HelperData(classLoaderManagerReference, uriProviderReference);
+
+    private final NamespacePrefixListener namespaceListener = new NamespacePrefixListener(helperData);
+
     @Activate
-    protected void activate(final ComponentContext context) throws RepositoryException {
+    protected void activate(final ComponentContext context, final Config config) throws RepositoryException {
         SlingRepository repository = context.locateService(REPOSITORY_REFERNENCE_NAME,
                 this.repositoryReference);
         if (repository == null) {
@@ -132,14 +269,75 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
         }
 
         this.repository = repository;
+        this.helperData.setChildPrefetch(config.listing_prefetch(), config.listing_prefetch_properties());
+        this.helperData.setQueryCacheSize(config.query_cache_size());
+        this.queryStatistics.setSlowQueryThreshold(config.query_slow_threshold());
+        this.autoSaveStatistics.setAutoSaveThreshold(config.auto_save_threshold());
+        this.singleListener = config.observation_single_listener();
+        this.asyncWindow = config.observation_async_window();
+        this.asyncQueueSize = config.observation_async() ? Math.max(1, config.observation_async_queue_size()) : 0;
+
+        final String[] sharedPaths = config.shared_cache_paths();
+        if (sharedPaths != null && sharedPaths.length > 0 && config.shared_cache_size() > 0) {
+            this.sharedCache = new SharedContentCache(sharedPaths, config.shared_cache_size(), this.helperData);
+        }
+
+        if (config.service_session_pool_size() > 0) {
+            this.sessionPool = new ServiceSessionPool(repositoryReference, config.service_session_pool_size(),
+                    TimeUnit.SECONDS.toMillis(config.service_session_pool_idle_timeout()));
+        }
+
+        this.stateFactory = new JcrProviderStateFactory(repositoryReference, repository, this.helperData,
+                new ResolverSettings()
+                        .itemCacheSize(config.resource_cache_size())
+                        .sharedCache(this.sharedCache)
+                        .sessionPool(this.sessionPool)
+                        .autoSaveStatistics(this.autoSaveStatistics));
+
+        this.registerMBean(context.getBundleContext(), "ObservationStatistics", "Observation Statistics",
+                ObservationStatisticsMBean.class, this.observationStatistics);
+        this.registerMBean(context.getBundleContext(), "QueryStatistics", "Query Statistics",
+                QueryStatisticsMBean.class, this.queryStatistics);
+        this.registerMBean(context.getBundleContext(), "AutoSaveStatistics", "Auto-Save Statistics",
+                AutoSaveStatisticsMBean.class, this.autoSaveStatistics);
+        if (this.sessionPool != null) {
+            this.registerMBean(context.getBundleContext(), "ServiceSessionPool", "Service Session Pool",
+                    ServiceSessionPoolMBean.class, this.sessionPool);
+        }
+    }
 
-        this.stateFactory = new JcrProviderStateFactory(repositoryReference, repository,
-                classLoaderManagerReference, uriProviderReference);
+    /**
+     * Register an MBean of this provider.
+     * @param bundleContext The bundle context
+     * @param name The name in the object name
+     * @param title The title used in the service description
+     * @param type The MBean interface
+     * @param impl The MBean
+     */
+    private <T> void registerMBean(final BundleContext bundleContext,
+            final String name,
+            final String title,
+            final Class<T> type,
+            final T impl) {
+        final Hashtable<String, Object> props = new Hashtable<String, Object>();
+        props.put("jmx.objectname", "org.apache.sling:type=jcr.resource,name=" + name);
+        props.put(Constants.SERVICE_DESCRIPTION, "Apache Sling JCR Resource Provider " + title);
+        props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        this.mbeanRegistrations.add(bundleContext.registerService(type, impl, props));
     }
 
     @Deactivate
     protected void deactivate() {
+        for (final ServiceRegistration<?> reg : this.mbeanRegistrations) {
+            reg.unregister();
+        }
+        this.mbeanRegistrations.clear();
+        if (this.sessionPool != null) {
+            this.sessionPool.close();
+            this.sessionPool = null;
+        }
         this.stateFactory = null;
+        this.sharedCache = null;
     }
 
     @Reference(name = "dynamicClassLoaderManager",
@@ -216,12 +414,22 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
             logger.debug("Registering resource listeners...");
             try {
                 this.listenerConfig = new JcrListenerBaseConfig(this.getProviderContext().getObservationReporter(),
-                    this.repository);
-                for(final ObserverConfiguration config : this.getProviderContext().getObservationReporter().getObserverConfigurations()) {
-                    logger.debug("Registering listener for {}", config.getPaths());
-                    final Closeable listener = new JcrResourceListener(this.listenerConfig,
-                            config);
-                    this.listeners.put(config, listener);
+                    this.repository, this.asyncWindow, this.asyncQueueSize, this.observationStatistics);
+                final List<ObserverConfiguration> configs = this.getProviderContext().getObservationReporter().getObserverConfigurations();
+                if ( this.singleListener ) {
+                    logger.debug("Registering single listener for {} configurations", configs.size());
+                    this.combinedListener = new JcrResourceListener(this.listenerConfig, configs);
+                } else {
+                    for(final ObserverConfiguration config : configs) {
+                        logger.debug("Registering listener for {}", config.getPaths());
+                        final Closeable listener = new JcrResourceListener(this.listenerConfig,
+                                config);
+                        this.listeners.put(config, listener);
+                    }
+                }
+                this.namespaceListener.start(this.listenerConfig);
+                if ( this.sharedCache != null ) {
+                    this.sharedCache.start(this.repository, this.listenerConfig);
                 }
             } catch (final RepositoryException e) {
                 throw new SlingException("Can't create the JCR event listener.", e);
@@ -244,6 +452,19 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
             }
         }
         this.listeners.clear();
+        if ( this.combinedListener != null ) {
+            try {
+                logger.debug("Removing single listener");
+                this.combinedListener.close();
+            } catch (final IOException e) {
+                // ignore this as the method above does not throw it
+            }
+            this.combinedListener = null;
+        }
+        this.namespaceListener.stop();
+        if ( this.sharedCache != null ) {
+            this.sharedCache.stop();
+        }
         if ( this.listenerConfig != null ) {
             try {
                 this.listenerConfig.close();
@@ -262,6 +483,15 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
         if ( this.listenerConfig == null ) {
             this.unregisterListeners();
             this.registerListeners();
+        } else if ( this.combinedListener != null ) {
+            logger.debug("Updating single resource listener...");
+            try {
+                final List<ObserverConfiguration> configs = this.getProviderContext().getObservationReporter().getObserverConfigurations();
+                this.combinedListener.update(configs);
+                this.observationStatistics.retain(configs);
+            } catch (final RepositoryException e) {
+                throw new SlingException("Can't update the JCR event listener.", e);
+            }
         } else {
             logger.debug("Updating resource listeners...");
             final Map<ObserverConfiguration, Closeable> oldMap = new HashMap<>(this.listeners);
@@ -290,6 +520,7 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
                     // ignore this as the method above does not throw it
                 }
             }
+            this.observationStatistics.retain(this.listeners.keySet());
             logger.debug("Updated resource listeners");
         }
     }
@@ -369,7 +600,7 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
                     }
                     String parentPath = ResourceUtil.getParent(child.getPath());
                     return new JcrNodeResource(ctx.getResourceResolver(), parentPath, version, parentNode,
-                            ctx.getProviderState().getHelperData());
+                            ctx.getProviderState().getHelperData(), ctx.getProviderState().getResourceFactory());
                 }
             } catch (RepositoryException e) {
                 logger.warn("Can't get parent for {}", child, e);
@@ -405,80 +636,7 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
     @Override
     public Resource create(final @Nonnull ResolveContext<JcrProviderState> ctx, final String path, final Map<String, Object> properties)
     throws PersistenceException {
-        // check for node type
-        final Object nodeObj = (properties != null ? properties.get(NodeUtil.NODE_TYPE) : null);
-        // check for sling:resourcetype
-        final String nodeType;
-        if ( nodeObj != null ) {
-            nodeType = nodeObj.toString();
-        } else {
-            final Object rtObj =  (properties != null ? properties.get(JcrResourceConstants.SLING_RESOURCE_TYPE_PROPERTY) : null);
-            boolean isNodeType = false;
-            if ( rtObj != null ) {
-                final String resourceType = rtObj.toString();
-                if ( resourceType.indexOf(':') != -1 && resourceType.indexOf('/') == -1 ) {
-                    try {
-                        ctx.getProviderState().getSession().getWorkspace().getNodeTypeManager().getNodeType(resourceType);
-                        isNodeType = true;
-                    } catch (final RepositoryException ignore) {
-                        // we expect this, if this isn't a valid node type, therefore ignoring
-                    }
-                }
-            }
-            if ( isNodeType ) {
-                nodeType = rtObj.toString();
-            } else {
-                nodeType = null;
-            }
-        }
-        final String jcrPath = path;
-        if ( jcrPath == null ) {
-            throw new PersistenceException("Unable to create node at " + path, null, path, null);
-        }
-        Node node = null;
-        try {
-            final int lastPos = jcrPath.lastIndexOf('/');
-            final Node parent;
-            if ( lastPos == 0 ) {
-                parent = ctx.getProviderState().getSession().getRootNode();
-            } else {
-                parent = (Node) ctx.getProviderState().getSession().getItem(jcrPath.substring(0, lastPos));
-            }
-            final String name = jcrPath.substring(lastPos + 1);
-            if ( nodeType != null ) {
-                node = parent.addNode(name, nodeType);
-            } else {
-                node = parent.addNode(name);
-            }
-
-            if ( properties != null ) {
-                // create modifiable map
-                final JcrModifiableValueMap jcrMap = new JcrModifiableValueMap(node, ctx.getProviderState().getHelperData());
-                // check mixin types first
-                final Object value = properties.get(NodeUtil.MIXIN_TYPES);
-                if ( value != null ) {
-                    jcrMap.put(NodeUtil.MIXIN_TYPES, value);
-                }
-                for(final Map.Entry<String, Object> entry : properties.entrySet()) {
-                    if ( !IGNORED_PROPERTIES.contains(entry.getKey()) ) {
-                        try {
-                            jcrMap.put(entry.getKey(), entry.getValue());
-                        } catch (final IllegalArgumentException iae) {
-                            try {
-                                node.remove();
-                            } catch ( final RepositoryException re) {
-                                // we ignore this
-                            }
-                            throw new PersistenceException(iae.getMessage(), iae, path, entry.getKey());
-                        }
-                    }
-                }
-            }
-
-            return new JcrNodeResource(ctx.getResourceResolver(), path, null, node, ctx.getProviderState().getHelperData());
-        } catch (final RepositoryException e) {
-            throw new PersistenceException("Unable to create node at " + jcrPath, e, path, null);
-        }
+        return new JcrNodeCreator(ctx.getResourceResolver(), ctx.getProviderState()).createResource(path, properties);
     }
 
     @Override
@@ -495,29 +653,62 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
                 }
                 item = ctx.getProviderState().getSession().getItem(jcrPath);
             }
-            item.remove();
+            ctx.getProviderState().getResourceFactory().clearCache();
+            ctx.getProviderState().getResourceFactory().nodeChanged(item.getPath());
+            final AutoSave autoSave = ctx.getProviderState().getAutoSave();
+            if (autoSave != null && item.isNode()) {
+                // count each node of the subtree, so that auto-save bounds the transient space
+                new JcrNodeDeleter(ctx.getProviderState()).delete((Node) item, autoSave);
+            } else {
+                item.remove();
+                modified(ctx);
+            }
         } catch (final RepositoryException e) {
             throw new PersistenceException("Unable to delete resource", e, resource.getPath(), null);
         }
     }
 
+    /**
+     * Count a modification if auto-save is enabled for the resource resolver.
+     */
+    private static void modified(final ResolveContext<JcrProviderState> ctx) throws RepositoryException {
+        final AutoSave autoSave = ctx.getProviderState().getAutoSave();
+        if (autoSave != null) {
+            autoSave.modified(1);
+        }
+    }
+
     @Override
     public void revert(final @Nonnull ResolveContext<JcrProviderState> ctx) {
+        ctx.getProviderState().getResourceFactory().clearCache();
+        final AutoSave autoSave = ctx.getProviderState().getAutoSave();
+        if (autoSave != null) {
+            autoSave.reverted();
+        }
         try {
             ctx.getProviderState().getSession().refresh(false);
         } catch (final RepositoryException ignore) {
             logger.warn("Unable to revert pending changes.", ignore);
         }
+        ctx.getProviderState().getResourceFactory().invalidateSharedCache();
     }
 
     @Override
     public void commit(final @Nonnull ResolveContext<JcrProviderState> ctx)
     throws PersistenceException {
+        ctx.getProviderState().getResourceFactory().clearCache();
+        final AutoSave autoSave = ctx.getProviderState().getAutoSave();
         try {
-            ctx.getProviderState().getSession().save();
+            if (autoSave != null) {
+                autoSave.save();
+            } else {
+                ctx.getProviderState().getSession().save();
+            }
         } catch (final RepositoryException e) {
             throw new PersistenceException("Unable to commit changes to session.", e);
         }
+        // don't wait for observation, so the resolver reads its own changes
+        ctx.getProviderState().getResourceFactory().invalidateSharedCache();
     }
 
     @Override
@@ -532,6 +723,7 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
 
     @Override
     public void refresh(final @Nonnull ResolveContext<JcrProviderState> ctx) {
+        ctx.getProviderState().getResourceFactory().clearCache();
         try {
             ctx.getProviderState().getSession().refresh(true);
         } catch (final RepositoryException ignore) {
@@ -546,6 +738,10 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
         Session session = ctx.getProviderState().getSession();
         if (type == Session.class) {
             return (AdapterType) session;
+        } else if (type == BatchResourceCreator.class) {
+            return (AdapterType) new JcrNodeCreator(ctx.getResourceResolver(), ctx.getProviderState());
+        } else if (type == BulkResourceDeleter.class) {
+            return (AdapterType) new JcrNodeDeleter(ctx.getProviderState());
         } else if (type == Principal.class) {
             try {
                 if (session instanceof JackrabbitSession && session.getUserID() != null) {
@@ -570,7 +766,16 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
     public boolean copy(final  @Nonnull ResolveContext<JcrProviderState> ctx,
             final String srcAbsPath,
             final String destAbsPath) throws PersistenceException {
-        return false;
+        final String dstNodePath = destAbsPath + '/' + ResourceUtil.getName(srcAbsPath);
+        ctx.getProviderState().getResourceFactory().clearCache();
+        ctx.getProviderState().getResourceFactory().nodeChanged(dstNodePath);
+        try {
+            new JcrNodeCopier(ctx.getProviderState().getSession(), ctx.getProviderState().getAutoSave())
+                    .copy(srcAbsPath, dstNodePath);
+            return true;
+        } catch (final RepositoryException e) {
+            throw new PersistenceException("Unable to copy resource to " + destAbsPath, e, srcAbsPath, null);
+        }
     }
 
     @Override
@@ -579,8 +784,12 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
             final String destAbsPath) throws PersistenceException {
         final String srcNodePath = srcAbsPath;
         final String dstNodePath = destAbsPath + '/' + ResourceUtil.getName(srcAbsPath);
+        ctx.getProviderState().getResourceFactory().clearCache();
+        ctx.getProviderState().getResourceFactory().nodeChanged(srcNodePath);
+        ctx.getProviderState().getResourceFactory().nodeChanged(dstNodePath);
         try {
             ctx.getProviderState().getSession().move(srcNodePath, dstNodePath);
+            modified(ctx);
             return true;
         } catch (final RepositoryException e) {
             throw new PersistenceException("Unable to move resource to " + destAbsPath, e, srcAbsPath, null);
@@ -591,7 +800,7 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
     public @CheckForNull QueryLanguageProvider<JcrProviderState> getQueryLanguageProvider() {
         final ProviderContext ctx = this.getProviderContext();
         if ( ctx != null ) {
-            return new BasicQueryLanguageProvider(ctx);
+            return new BasicQueryLanguageProvider(ctx, this.queryStatistics);
         }
         return null;
     }
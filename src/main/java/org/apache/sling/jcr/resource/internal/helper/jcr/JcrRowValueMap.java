@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+import javax.jcr.query.Row;
+
+import org.apache.sling.jcr.resource.internal.helper.JcrResourceUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A map over a single query result row. The column layout is resolved once
+ * per query result and shared by all rows, values are only converted when
+ * they are accessed. A modification copies the row into a plain map.
+ */
+class JcrRowValueMap extends AbstractMap<String, Object> {
+
+    /** column name for node path */
+    static final String QUERY_COLUMN_PATH = "jcr:path";
+
+    /** column name for score value */
+    static final String QUERY_COLUMN_SCORE = "jcr:score";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JcrRowValueMap.class);
+
+    /** Marker for a value which has not been converted yet. */
+    private static final Object NOT_READ = new Object();
+
+    private final Columns columns;
+
+    private final Row row;
+
+    /** The converted values, indexed like the keys of the columns. */
+    private final Object[] converted;
+
+    /** The raw values of the row, read on first access. */
+    private Value[] values;
+
+    /** The copy of the row once it is modified or iterated. */
+    private Map<String, Object> map;
+
+    JcrRowValueMap(final Columns columns, final Row row) {
+        this.columns = columns;
+        this.row = row;
+        this.converted = new Object[columns.keys.length];
+        Arrays.fill(this.converted, NOT_READ);
+    }
+
+    @Override
+    public Object get(final Object key) {
+        if ( this.map != null ) {
+            return this.map.get(key);
+        }
+        final Integer index = this.columns.indexes.get(key);
+        return index == null ? null : this.getValue(index);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return this.get(key) != null;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return this.getMap().entrySet();
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        return this.getMap().put(key, value);
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        return this.getMap().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        this.getMap().clear();
+    }
+
+    private Map<String, Object> getMap() {
+        if ( this.map == null ) {
+            final Map<String, Object> result = new LinkedHashMap<>();
+            for(int i = 0; i < this.columns.keys.length; i++) {
+                final Object value = this.getValue(i);
+                if ( value != null ) {
+                    result.put(this.columns.keys[i], value);
+                }
+            }
+            this.map = result;
+        }
+        return this.map;
+    }
+
+    private Object getValue(final int index) {
+        Object result = this.converted[index];
+        if ( result == NOT_READ ) {
+            try {
+                result = this.readValue(index);
+            } catch (final RepositoryException re) {
+                LOGGER.error("Problem accessing value of column " + this.columns.keys[index], re);
+                result = null;
+            }
+            this.converted[index] = result;
+        }
+        return result;
+    }
+
+    private Object readValue(final int index) throws RepositoryException {
+        final String key = this.columns.keys[index];
+        if ( index < this.columns.columnCount ) {
+            if ( this.values == null ) {
+                this.values = this.row.getValues();
+            }
+            final Value value = index < this.values.length ? this.values[index] : null;
+            if ( value != null ) {
+                final Object result = JcrResourceUtil.toJavaObject(value);
+                return QUERY_COLUMN_PATH.equals(key) ? result.toString() : result;
+            }
+        }
+        // path and score are always available
+        if ( QUERY_COLUMN_PATH.equals(key) ) {
+            return this.row.getPath();
+        } else if ( QUERY_COLUMN_SCORE.equals(key) ) {
+            return this.row.getScore();
+        }
+        return null;
+    }
+
+    /**
+     * The column layout of a query result: the column names followed by the
+     * path and score if these are not selected as columns.
+     */
+    static final class Columns {
+
+        final String[] keys;
+
+        final int columnCount;
+
+        final Map<String, Integer> indexes;
+
+        Columns(final String[] columnNames) {
+            final boolean hasPath = Arrays.asList(columnNames).contains(QUERY_COLUMN_PATH);
+            final boolean hasScore = Arrays.asList(columnNames).contains(QUERY_COLUMN_SCORE);
+            this.columnCount = columnNames.length;
+            this.keys = Arrays.copyOf(columnNames,
+                    columnNames.length + (hasPath ? 0 : 1) + (hasScore ? 0 : 1));
+            int pos = columnNames.length;
+            if ( !hasPath ) {
+                this.keys[pos++] = QUERY_COLUMN_PATH;
+            }
+            if ( !hasScore ) {
+                this.keys[pos] = QUERY_COLUMN_SCORE;
+            }
+            this.indexes = new HashMap<>();
+            for(int i = 0; i < this.keys.length; i++) {
+                this.indexes.put(this.keys[i], i);
+            }
+        }
+    }
+}
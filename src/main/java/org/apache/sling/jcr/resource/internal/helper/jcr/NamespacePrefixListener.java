@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrListenerBaseConfig;
+
+/**
+ * Drops the namespace prefixes cached in the shared {@link HelperData}
+ * whenever the namespace registry changes.
+ */
+class NamespacePrefixListener implements EventListener {
+
+    /** The path of the namespace registry in Oak. */
+    static final String NAMESPACES_PATH = "/jcr:system/rep:namespaces";
+
+    private final HelperData helper;
+
+    private volatile JcrListenerBaseConfig listenerConfig;
+
+    NamespacePrefixListener(final HelperData helper) {
+        this.helper = helper;
+    }
+
+    /**
+     * Register the listener. The cached prefixes are dropped as changes
+     * before the registration are not reported.
+     * @param listenerConfig The listener base configuration
+     * @throws RepositoryException If the registration fails
+     */
+    void start(final JcrListenerBaseConfig listenerConfig) throws RepositoryException {
+        listenerConfig.register(this, new PathObserverConfiguration(NAMESPACES_PATH));
+        this.listenerConfig = listenerConfig;
+        this.helper.resetNamespacePrefixes();
+    }
+
+    /**
+     * Unregister the listener.
+     */
+    void stop() {
+        if (this.listenerConfig != null) {
+            this.listenerConfig.unregister(this);
+            this.listenerConfig = null;
+        }
+    }
+
+    @Override
+    public void onEvent(final EventIterator events) {
+        this.helper.resetNamespacePrefixes();
+    }
+}
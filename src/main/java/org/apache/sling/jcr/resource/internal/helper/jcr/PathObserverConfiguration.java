@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.path.PathSet;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+
+/**
+ * Observer configuration for all local and external changes below a
+ * set of paths, used by the internal listeners of this provider.
+ */
+class PathObserverConfiguration implements ObserverConfiguration {
+
+    private final PathSet paths;
+
+    PathObserverConfiguration(final String... paths) {
+        this.paths = PathSet.fromStrings(paths);
+    }
+
+    @Override
+    public boolean includeExternal() {
+        return true;
+    }
+
+    @Override
+    public PathSet getPaths() {
+        return this.paths;
+    }
+
+    @Override
+    public PathSet getExcludedPaths() {
+        return PathSet.EMPTY_SET;
+    }
+
+    @Override
+    public Set<ChangeType> getChangeTypes() {
+        return EnumSet.of(ChangeType.ADDED, ChangeType.REMOVED, ChangeType.CHANGED);
+    }
+
+    @Override
+    public boolean matches(final String path) {
+        return this.paths.matches(path) != null;
+    }
+
+    @Override
+    public Set<String> getPropertyNamesHint() {
+        return null;
+    }
+}
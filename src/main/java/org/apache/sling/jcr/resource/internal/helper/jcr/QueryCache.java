@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.InvalidQueryException;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+
+/**
+ * Executes the queries of a resource resolver. The prepared queries are
+ * kept in a small LRU cache per session, keyed by statement and language.
+ * <p>
+ * A statement may end with a hint comment which is removed before the
+ * query is prepared, for example
+ * <code>/jcr:root/content//*[@title = $title] &#47;* limit=10, offset=20, $title=News *&#47;</code>.
+ * <code>limit</code> and <code>offset</code> are passed to the query and
+ * each <code>$name=value</code> binds the string value to the bind
+ * variable of the given name. As the values bound by a previous execution
+ * are kept by a prepared query, each bind variable of the statement has to
+ * be bound by the hints of every execution.
+ */
+class QueryCache {
+
+    /** The hint comment at the end of a statement. */
+    private static final Pattern HINTS = Pattern.compile(
+            "\\s*/\\*((?:\\s*(?:limit|offset|\\$[\\w:]+)\\s*=\\s*[^\\s,*]*\\s*,?)+)\\*/\\s*$");
+
+    private static final Pattern HINT = Pattern.compile("(limit|offset|\\$[\\w:]+)\\s*=\\s*([^\\s,*]*)");
+
+    private final Session session;
+
+    /** The prepared queries, {@code null} if disabled. */
+    private final Map<String, PreparedQuery> queries;
+
+    /**
+     * Create a new cache
+     * @param session The session
+     * @param size The maximum number of prepared queries, 0 disables caching
+     */
+    QueryCache(final Session session, final int size) {
+        this.session = session;
+        if ( size > 0 ) {
+            this.queries = new LinkedHashMap<String, PreparedQuery>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, PreparedQuery> eldest) {
+                    return size() > size;
+                }
+            };
+        } else {
+            this.queries = null;
+        }
+    }
+
+    /**
+     * Execute a query, applying the hints of the statement.
+     * @param statement The statement, optionally ending with a hint comment
+     * @param language The query language
+     * @return The query result
+     * @throws InvalidQueryException If the statement or a hint is invalid
+     *                               or a bind variable is not bound
+     * @throws RepositoryException If the query can't be executed
+     */
+    QueryResult execute(final String statement, final String language) throws RepositoryException {
+        return this.execute(statement, language, null);
+    }
+
+    /**
+     * Execute a query, applying the hints of the statement.
+     * @param statement The statement, optionally ending with a hint comment
+     * @param language The query language
+     * @param execution The optional execution recording the time spent
+     * @return The query result
+     * @throws InvalidQueryException If the statement or a hint is invalid
+     *                               or a bind variable is not bound
+     * @throws RepositoryException If the query can't be executed
+     */
+    QueryResult execute(final String statement,
+            final String language,
+            final QueryStatistics.Execution execution) throws RepositoryException {
+        final long start = System.nanoTime();
+        final Matcher matcher = HINTS.matcher(statement);
+        final boolean hasHints = matcher.find();
+        final String query = hasHints ? statement.substring(0, matcher.start()) : statement;
+
+        final PreparedQuery pq = this.prepare(query, language);
+        if ( pq.limited ) {
+            // reset the hints of the previous execution
+            pq.query.setLimit(Long.MAX_VALUE);
+            pq.query.setOffset(0);
+            pq.limited = false;
+        }
+        final Set<String> bound = new HashSet<String>();
+        if ( hasHints ) {
+            final Matcher hint = HINT.matcher(matcher.group(1));
+            while ( hint.find() ) {
+                final String name = hint.group(1);
+                final String value = hint.group(2);
+                if ( name.startsWith("$") ) {
+                    pq.query.bindValue(name.substring(1), this.session.getValueFactory().createValue(value));
+                    bound.add(name.substring(1));
+                } else {
+                    final long number = parseHint(name, value, statement);
+                    if ( "limit".equals(name) ) {
+                        pq.query.setLimit(number);
+                    } else {
+                        pq.query.setOffset(number);
+                    }
+                    pq.limited = true;
+                }
+            }
+        }
+        for ( final String name : pq.getBindVariableNames() ) {
+            if ( !bound.contains(name) ) {
+                throw new InvalidQueryException("Bind variable $" + name + " is not bound in query " + statement);
+            }
+        }
+        final long prepared = System.nanoTime();
+        final QueryResult result = pq.query.execute();
+        if ( execution != null ) {
+            execution.parsed(prepared - start);
+            execution.executed(System.nanoTime() - prepared);
+        }
+        return result;
+    }
+
+    private PreparedQuery prepare(final String statement, final String language) throws RepositoryException {
+        final String key = language + '\n' + statement;
+        PreparedQuery prepared = this.queries == null ? null : this.queries.get(key);
+        if ( prepared == null ) {
+            prepared = new PreparedQuery(this.session.getWorkspace().getQueryManager().createQuery(statement, language));
+            if ( this.queries != null ) {
+                this.queries.put(key, prepared);
+            }
+        }
+        return prepared;
+    }
+
+    private static long parseHint(final String name, final String value, final String statement)
+    throws InvalidQueryException {
+        try {
+            final long result = Long.parseLong(value);
+            if ( result >= 0 ) {
+                return result;
+            }
+        } catch (final NumberFormatException nfe) {
+            // reported below
+        }
+        throw new InvalidQueryException("Invalid " + name + " '" + value + "' in query " + statement);
+    }
+
+    private static final class PreparedQuery {
+
+        final Query query;
+
+        /** Whether limit or offset have been set. */
+        boolean limited;
+
+        private String[] bindVariableNames;
+
+        PreparedQuery(final Query query) {
+            this.query = query;
+        }
+
+        String[] getBindVariableNames() throws RepositoryException {
+            if ( this.bindVariableNames == null ) {
+                final String[] names = this.query.getBindVariableNames();
+                this.bindVariableNames = names == null ? new String[0] : names;
+            }
+            return this.bindVariableNames;
+        }
+    }
+}
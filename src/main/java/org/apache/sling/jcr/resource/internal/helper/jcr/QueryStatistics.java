@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.RangeIterator;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counters and timers of the queries, per query language.
+ * <p>
+ * The time spent iterating is accounted for while the result is iterated.
+ * The rows read and excluded are only accounted for once a result has
+ * been iterated completely. A query is logged as slow once its total time
+ * reaches the slow query threshold: right after it has been executed or
+ * while its result is iterated, with the rows read so far. So queries
+ * whose results are never iterated completely are logged as well.
+ */
+public class QueryStatistics implements QueryStatisticsMBean {
+
+    /** The maximum number of slow queries kept for {@link #getSlowQueries()}. */
+    static final int SLOW_QUERIES_SIZE = 20;
+
+    private static final String[] ITEM_NAMES = {"language", "queries", "parseTime", "executeTime",
+            "iterationTime", "rowsRead", "rowsExcluded", "slowQueries"};
+
+    private static final String[] ITEM_DESCRIPTIONS = {"Query language", "Number of queries",
+            "Time spent preparing queries (ms)", "Time spent executing queries (ms)",
+            "Time spent iterating results (ms)", "Number of rows read", "Number of rows in excluded paths",
+            "Number of slow queries"};
+
+    @SuppressWarnings("rawtypes")
+    private static final OpenType[] ITEM_TYPES = {SimpleType.STRING, SimpleType.LONG, SimpleType.LONG,
+            SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG};
+
+    private final Logger logger = LoggerFactory.getLogger(QueryStatistics.class);
+
+    private final ConcurrentHashMap<String, LanguageStatistics> languages = new ConcurrentHashMap<String, LanguageStatistics>();
+
+    private final AtomicLong slowQueryCount = new AtomicLong();
+
+    /** The most recent slow queries, newest first, guarded by itself. */
+    private final Deque<String> slowQueries = new ArrayDeque<String>();
+
+    private volatile long slowQueryThreshold;
+
+    /**
+     * Set the threshold for slow queries
+     * @param millis The threshold in milliseconds, 0 disables the slow query log
+     */
+    public void setSlowQueryThreshold(final long millis) {
+        this.slowQueryThreshold = Math.max(0, millis);
+    }
+
+    /**
+     * Start recording a query.
+     * @param statement The statement
+     * @param language The query language
+     * @param userId The id of the user executing the query
+     * @return The execution
+     */
+    Execution start(final String statement, final String language, final String userId) {
+        return new Execution(statement, language, userId, this.get(language),
+                this.slowQueryThreshold > 0 && logger.isDebugEnabled() ? new Exception("Query executed here") : null);
+    }
+
+    private LanguageStatistics get(final String language) {
+        LanguageStatistics stats = this.languages.get(language);
+        if ( stats == null ) {
+            stats = new LanguageStatistics();
+            final LanguageStatistics old = this.languages.putIfAbsent(language, stats);
+            if ( old != null ) {
+                stats = old;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Log the execution if it reached the slow query threshold.
+     * @return {@code true} if the execution has been logged
+     */
+    private boolean checkSlow(final Execution execution, final boolean complete) {
+        final long threshold = this.slowQueryThreshold;
+        final long millis = toMillis(execution.parseNanos + execution.executeNanos + execution.iterationNanos);
+        if ( threshold > 0 && millis >= threshold ) {
+            this.slowQueryCount.incrementAndGet();
+            execution.stats.slowQueries.incrementAndGet();
+            final long rowsRead = execution.rows == null ? 0 : execution.rows.getPosition();
+            final String message = String.format("%s query by %s took %d ms (parse %d ms, execute %d ms), "
+                    + "%d rows read%s, %d rows excluded: %s",
+                    execution.language, execution.userId, millis, toMillis(execution.parseNanos),
+                    toMillis(execution.executeNanos), rowsRead, complete ? "" : " so far",
+                    rowsRead - execution.returned, execution.statement);
+            synchronized ( this.slowQueries ) {
+                this.slowQueries.addFirst(message);
+                if ( this.slowQueries.size() > SLOW_QUERIES_SIZE ) {
+                    this.slowQueries.removeLast();
+                }
+            }
+            if ( execution.origin != null ) {
+                logger.warn("Slow query: " + message, execution.origin);
+            } else {
+                logger.warn("Slow query: {}", message);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public TabularData getLanguages() {
+        try {
+            final CompositeType rowType = new CompositeType("QueryStatistics", "Statistics of a query language",
+                    ITEM_NAMES, ITEM_DESCRIPTIONS, ITEM_TYPES);
+            final TabularDataSupport data = new TabularDataSupport(new TabularType("QueryStatistics",
+                    "Statistics per query language", rowType, new String[] {"language"}));
+            for(final Map.Entry<String, LanguageStatistics> entry : this.languages.entrySet()) {
+                final LanguageStatistics stats = entry.getValue();
+                data.put(new CompositeDataSupport(rowType, ITEM_NAMES, new Object[] {
+                        entry.getKey(),
+                        stats.queries.get(),
+                        toMillis(stats.parseNanos.get()),
+                        toMillis(stats.executeNanos.get()),
+                        toMillis(stats.iterationNanos.get()),
+                        stats.rowsRead.get(),
+                        stats.rowsExcluded.get(),
+                        stats.slowQueries.get()
+                }));
+            }
+            return data;
+        } catch (final OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return this.slowQueryCount.get();
+    }
+
+    @Override
+    public String[] getSlowQueries() {
+        synchronized ( this.slowQueries ) {
+            return this.slowQueries.toArray(new String[this.slowQueries.size()]);
+        }
+    }
+
+    @Override
+    public long getSlowQueryThreshold() {
+        return this.slowQueryThreshold;
+    }
+
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static final class LanguageStatistics {
+
+        final AtomicLong queries = new AtomicLong();
+
+        final AtomicLong parseNanos = new AtomicLong();
+
+        final AtomicLong executeNanos = new AtomicLong();
+
+        final AtomicLong iterationNanos = new AtomicLong();
+
+        final AtomicLong rowsRead = new AtomicLong();
+
+        final AtomicLong rowsExcluded = new AtomicLong();
+
+        final AtomicLong slowQueries = new AtomicLong();
+    }
+
+    /**
+     * A single query, used by the thread executing it.
+     */
+    final class Execution {
+
+        final String statement;
+
+        final String language;
+
+        final String userId;
+
+        final LanguageStatistics stats;
+
+        /** Where the query was executed, only recorded for debugging. */
+        final Exception origin;
+
+        long parseNanos;
+
+        long executeNanos;
+
+        long iterationNanos;
+
+        /** The rows of the result, once it is iterated. */
+        RangeIterator rows;
+
+        /** The number of rows returned to the caller. */
+        long returned;
+
+        /** Whether the query has been logged as slow. */
+        private boolean slow;
+
+        private Execution(final String statement,
+                final String language,
+                final String userId,
+                final LanguageStatistics stats,
+                final Exception origin) {
+            this.statement = statement;
+            this.language = language;
+            this.userId = userId;
+            this.stats = stats;
+            this.origin = origin;
+            stats.queries.incrementAndGet();
+        }
+
+        void parsed(final long nanos) {
+            this.parseNanos += nanos;
+            this.stats.parseNanos.addAndGet(nanos);
+        }
+
+        void executed(final long nanos) {
+            this.executeNanos += nanos;
+            this.stats.executeNanos.addAndGet(nanos);
+            this.checkSlow(false);
+        }
+
+        private void checkSlow(final boolean complete) {
+            if ( !this.slow ) {
+                this.slow = QueryStatistics.this.checkSlow(this, complete);
+            }
+        }
+
+        void iterated(final long nanos) {
+            this.iterationNanos += nanos;
+            this.stats.iterationNanos.addAndGet(nanos);
+        }
+
+        /**
+         * Wrap the iterator over the query result to record the time spent
+         * iterating and the rows read and excluded.
+         * @param iterator The iterator over the included rows
+         * @param rows The iterator over all rows of the query result
+         * @return The iterator to be returned to the caller
+         */
+        <T> Iterator<T> track(final Iterator<T> iterator, final RangeIterator rows) {
+            this.rows = rows;
+            return new Iterator<T>() {
+
+                private boolean done;
+
+                @Override
+                public boolean hasNext() {
+                    final long start = System.nanoTime();
+                    final boolean result = iterator.hasNext();
+                    iterated(System.nanoTime() - start);
+                    if ( !result && !done ) {
+                        done = true;
+                        final long rowsRead = rows.getPosition();
+                        stats.rowsRead.addAndGet(rowsRead);
+                        stats.rowsExcluded.addAndGet(rowsRead - returned);
+                        checkSlow(true);
+                    } else if ( !done ) {
+                        checkSlow(false);
+                    }
+                    return result;
+                }
+
+                @Override
+                public T next() {
+                    final long start = System.nanoTime();
+                    final T result = iterator.next();
+                    iterated(System.nanoTime() - start);
+                    returned++;
+                    return result;
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * Statistics of the queries executed through the resource resolver.
+ */
+public interface QueryStatisticsMBean {
+
+    /**
+     * One row per query language with the number of queries, the time
+     * spent parsing, executing and iterating and the rows read.
+     * @return The statistics per query language
+     */
+    TabularData getLanguages();
+
+    /** @return The number of queries which took at least the slow query threshold */
+    long getSlowQueryCount();
+
+    /** @return The most recent slow queries, newest first */
+    String[] getSlowQueries();
+
+    /** @return The threshold in milliseconds for slow queries, 0 if disabled */
+    long getSlowQueryThreshold();
+}
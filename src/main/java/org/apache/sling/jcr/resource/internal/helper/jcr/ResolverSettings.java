@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import org.apache.sling.jcr.resource.internal.AutoSaveStatistics;
+
+/**
+ * The optional features of the provider applied to each resource resolver.
+ * All features are disabled by default.
+ */
+final class ResolverSettings {
+
+    private int itemCacheSize;
+
+    private SharedContentCache sharedCache;
+
+    private ServiceSessionPool sessionPool;
+
+    private AutoSaveStatistics autoSaveStatistics;
+
+    /**
+     * @param itemCacheSize The maximum number of items and version lookups
+     *                      cached per resolver, <code>0</code> disables the caches
+     * @return These settings
+     */
+    ResolverSettings itemCacheSize(final int itemCacheSize) {
+        this.itemCacheSize = itemCacheSize;
+        return this;
+    }
+
+    /**
+     * @param sharedCache The cache shared between all resolvers, might be <code>null</code>
+     * @return These settings
+     */
+    ResolverSettings sharedCache(final SharedContentCache sharedCache) {
+        this.sharedCache = sharedCache;
+        return this;
+    }
+
+    /**
+     * @param sessionPool The pool of service sessions, might be <code>null</code>
+     * @return These settings
+     */
+    ResolverSettings sessionPool(final ServiceSessionPool sessionPool) {
+        this.sessionPool = sessionPool;
+        return this;
+    }
+
+    /**
+     * @param autoSaveStatistics The statistics and threshold of the auto-saves,
+     *                           <code>null</code> if auto-save is not supported
+     * @return These settings
+     */
+    ResolverSettings autoSaveStatistics(final AutoSaveStatistics autoSaveStatistics) {
+        this.autoSaveStatistics = autoSaveStatistics;
+        return this;
+    }
+
+    int getItemCacheSize() {
+        return itemCacheSize;
+    }
+
+    SharedContentCache getSharedCache() {
+        return sharedCache;
+    }
+
+    ServiceSessionPool getSessionPool() {
+        return sessionPool;
+    }
+
+    AutoSaveStatistics getAutoSaveStatistics() {
+        return autoSaveStatistics;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.sling.jcr.api.SlingRepository;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of service sessions, keyed by the calling bundle and the
+ * subservice name. A session returned to the pool is refreshed and
+ * handed out again to the next resolver of the same bundle and
+ * subservice, saving the cost of a service login.
+ * <p>
+ * Each pooled session keeps the repository service obtained on behalf of
+ * the calling bundle; the service is released when the session is evicted.
+ * Sessions idle for longer than the idle timeout are evicted, as are
+ * sessions returned while the pool for their key is full. Expired sessions
+ * are evicted on each pool operation and periodically by a background
+ * thread, so they don't pin repository state once a key is no longer used.
+ */
+public class ServiceSessionPool implements ServiceSessionPoolMBean {
+
+    private final Logger logger = LoggerFactory.getLogger(ServiceSessionPool.class);
+
+    private final ServiceReference<SlingRepository> repositoryReference;
+
+    private final int maxIdle;
+
+    private final long idleTimeout;
+
+    /** The idle sessions per key, most recently used first, guarded by this. */
+    private final Map<String, Deque<PooledSession>> idle = new HashMap<String, Deque<PooledSession>>();
+
+    private int idleCount;
+
+    private boolean closed;
+
+    private final AtomicLong reuseCount = new AtomicLong();
+
+    private final AtomicLong loginCount = new AtomicLong();
+
+    private final AtomicLong returnCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /** Evicts expired sessions, {@code null} if sessions expire immediately. */
+    private final ScheduledExecutorService evictionExecutor;
+
+    /**
+     * Create a new pool
+     * @param repositoryReference The repository reference, released on eviction
+     * @param maxIdle The maximum number of idle sessions per bundle and subservice
+     * @param idleTimeout The time in milliseconds after which an idle session is evicted
+     */
+    public ServiceSessionPool(final ServiceReference<SlingRepository> repositoryReference,
+            final int maxIdle,
+            final long idleTimeout) {
+        this.repositoryReference = repositoryReference;
+        this.maxIdle = maxIdle;
+        this.idleTimeout = idleTimeout;
+        if ( idleTimeout > 0 ) {
+            this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, "Apache Sling JCR Resource Provider Session Pool Eviction");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    evictExpired();
+                }
+            }, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+        } else {
+            this.evictionExecutor = null;
+        }
+    }
+
+    /**
+     * Get the pool key
+     * @param bundle The calling bundle
+     * @param subServiceName The optional subservice name
+     * @return The key
+     */
+    static String getKey(final Bundle bundle, final String subServiceName) {
+        return bundle.getBundleId() + "/" + (subServiceName == null ? "" : subServiceName);
+    }
+
+    /**
+     * Take a refreshed session from the pool.
+     * @param key The key
+     * @param bundleContext The bundle context of the calling bundle
+     * @return A session or {@code null} if no session is available
+     */
+    Session borrow(final String key, final BundleContext bundleContext) {
+        final List<PooledSession> evicted = new ArrayList<PooledSession>();
+        PooledSession result = null;
+        synchronized ( this ) {
+            this.collectExpired(System.currentTimeMillis(), evicted);
+            final Deque<PooledSession> sessions = this.idle.get(key);
+            while ( result == null && sessions != null && !sessions.isEmpty() ) {
+                final PooledSession candidate = sessions.pollFirst();
+                this.idleCount--;
+                // the bundle might have been restarted in the meantime
+                if ( candidate.bundleContext == bundleContext ) {
+                    result = candidate;
+                } else {
+                    evicted.add(candidate);
+                }
+            }
+        }
+        this.evict(evicted);
+        if ( result != null ) {
+            try {
+                if ( result.session.isLive() ) {
+                    result.session.refresh(false);
+                    this.reuseCount.incrementAndGet();
+                    return result.session;
+                }
+            } catch (final RepositoryException re) {
+                logger.debug("Unable to refresh pooled session", re);
+            }
+            this.evict(result);
+        }
+        this.loginCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Return a session to the pool. If the session can't be pooled, it is
+     * logged out and the repository service is released.
+     * @param key The key
+     * @param session The session
+     * @param bundleContext The bundle context of the calling bundle
+     */
+    void release(final String key, final Session session, final BundleContext bundleContext) {
+        final PooledSession pooled = new PooledSession(session, bundleContext);
+        final List<PooledSession> evicted = new ArrayList<PooledSession>();
+        boolean added = false;
+        if ( session.isLive() ) {
+            try {
+                session.refresh(false);
+                synchronized ( this ) {
+                    this.collectExpired(System.currentTimeMillis(), evicted);
+                    Deque<PooledSession> sessions = this.idle.get(key);
+                    if ( sessions == null && !this.closed ) {
+                        sessions = new ArrayDeque<PooledSession>();
+                        this.idle.put(key, sessions);
+                    }
+                    if ( sessions != null && sessions.size() < this.maxIdle ) {
+                        pooled.lastUsed = System.currentTimeMillis();
+                        sessions.addFirst(pooled);
+                        this.idleCount++;
+                        added = true;
+                    }
+                }
+            } catch (final RepositoryException re) {
+                logger.debug("Unable to refresh session returned to the pool", re);
+            }
+        }
+        this.evict(evicted);
+        if ( added ) {
+            this.returnCount.incrementAndGet();
+        } else {
+            this.evict(pooled);
+        }
+    }
+
+    /**
+     * Log out all sessions idle for longer than the timeout.
+     */
+    void evictExpired() {
+        final List<PooledSession> evicted = new ArrayList<PooledSession>();
+        synchronized ( this ) {
+            this.collectExpired(System.currentTimeMillis(), evicted);
+        }
+        this.evict(evicted);
+    }
+
+    /**
+     * Log out all idle sessions. Sessions returned afterwards are not pooled.
+     */
+    void close() {
+        if ( this.evictionExecutor != null ) {
+            this.evictionExecutor.shutdownNow();
+        }
+        final List<PooledSession> evicted = new ArrayList<PooledSession>();
+        synchronized ( this ) {
+            this.closed = true;
+            for(final Deque<PooledSession> sessions : this.idle.values()) {
+                evicted.addAll(sessions);
+            }
+            this.idle.clear();
+            this.idleCount = 0;
+        }
+        this.evict(evicted);
+    }
+
+    /**
+     * Remove all sessions idle for longer than the timeout. The oldest
+     * sessions are at the end of each queue. Must be called while holding
+     * the lock.
+     */
+    private void collectExpired(final long now, final List<PooledSession> evicted) {
+        final Iterator<Deque<PooledSession>> iter = this.idle.values().iterator();
+        while ( iter.hasNext() ) {
+            final Deque<PooledSession> sessions = iter.next();
+            while ( !sessions.isEmpty() && now - sessions.peekLast().lastUsed > this.idleTimeout ) {
+                evicted.add(sessions.pollLast());
+                this.idleCount--;
+            }
+            if ( sessions.isEmpty() ) {
+                iter.remove();
+            }
+        }
+    }
+
+    private void evict(final List<PooledSession> sessions) {
+        for(final PooledSession pooled : sessions) {
+            this.evict(pooled);
+        }
+    }
+
+    private void evict(final PooledSession pooled) {
+        this.evictionCount.incrementAndGet();
+        if ( pooled.session.isLive() ) {
+            pooled.session.logout();
+        }
+        try {
+            pooled.bundleContext.ungetService(this.repositoryReference);
+        } catch ( final IllegalStateException ise ) {
+            // the calling bundle has been stopped, we can ignore this
+        }
+    }
+
+    @Override
+    public long getReuseCount() {
+        return this.reuseCount.get();
+    }
+
+    @Override
+    public long getLoginCount() {
+        return this.loginCount.get();
+    }
+
+    @Override
+    public long getReturnCount() {
+        return this.returnCount.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    @Override
+    public synchronized int getIdleCount() {
+        return this.idleCount;
+    }
+
+    private static final class PooledSession {
+
+        final Session session;
+
+        final BundleContext bundleContext;
+
+        long lastUsed;
+
+        PooledSession(final Session session, final BundleContext bundleContext) {
+            this.session = session;
+            this.bundleContext = bundleContext;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+/**
+ * Statistics of the pool of service sessions.
+ */
+public interface ServiceSessionPoolMBean {
+
+    /** @return The number of service sessions taken from the pool */
+    long getReuseCount();
+
+    /** @return The number of service logins as no pooled session was available */
+    long getLoginCount();
+
+    /** @return The number of service sessions returned to the pool */
+    long getReturnCount();
+
+    /** @return The number of sessions logged out as they were idle, not live or the pool was full */
+    long getEvictionCount();
+
+    /** @return The number of idle sessions in the pool */
+    int getIdleCount();
+}
@@ -0,0 +1,504 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import static javax.jcr.observation.Event.NODE_ADDED;
+import static javax.jcr.observation.Event.NODE_MOVED;
+import static javax.jcr.observation.Event.NODE_REMOVED;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import javax.jcr.security.AccessControlEntry;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.AccessControlPolicy;
+import javax.jcr.security.Privilege;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlEntry;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlManager;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrListenerBaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of node snapshots shared by all resource resolvers. Only content
+ * below the configured path prefixes which is readable by everyone is cached.
+ * The snapshots are read through a session of the {@value #SUBSERVICE_NAME}
+ * subservice, which needs read access and read access control access for
+ * the cached paths and their ancestors. The snapshots are invalidated through
+ * observation and synchronously for the paths committed through a resource
+ * resolver. The least recently used snapshots are evicted once the maximum
+ * size is reached.
+ * <p>
+ * A node is readable by everyone if the everyone principal has read access
+ * and no effective access control entry denies access to other principals
+ * or uses restrictions like {@code rep:glob} or {@code rep:itemNames}, which
+ * might hide properties. As access control changes affect the whole subtree,
+ * a change below a {@code rep:policy} node drops all snapshots of the
+ * subtree. The resource resolvers still check that the node exists for their
+ * session before using a snapshot.
+ */
+class SharedContentCache implements EventListener {
+
+    /** The subservice used to read the snapshots and access control policies. */
+    static final String SUBSERVICE_NAME = "sharedcache";
+
+    /** The name of the access control policy nodes. */
+    private static final String POLICY_NAME = "rep:policy";
+
+    /** The metadata keys which are copied into a snapshot. */
+    private static final String[] METADATA_KEYS = new String[] {
+        ResourceMetadata.CREATION_TIME,
+        ResourceMetadata.CONTENT_TYPE,
+        ResourceMetadata.CHARACTER_ENCODING,
+        ResourceMetadata.MODIFICATION_TIME,
+        ResourceMetadata.CONTENT_LENGTH
+    };
+
+    /** Marker for paths which can't be shared. */
+    private static final NodeSnapshot NOT_SHAREABLE = new NodeSnapshot(null, null,
+            Collections.<String, Object>emptyMap(), Collections.<String, Object>emptyMap(),
+            Collections.<String>emptyList());
+
+    private final Logger logger = LoggerFactory.getLogger(SharedContentCache.class);
+
+    private final String[] prefixes;
+
+    private final int maxSize;
+
+    private final HelperData helper;
+
+    /** The snapshots in access order, guarded by itself. */
+    private final Map<String, NodeSnapshot> snapshots;
+
+    /** Incremented on each observation event batch. */
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile Session session;
+
+    private volatile JcrListenerBaseConfig listenerConfig;
+
+    /**
+     * Create a new cache
+     * @param prefixes The path prefixes to cache
+     * @param maxSize The maximum number of cached nodes
+     * @param helper The helper data
+     */
+    SharedContentCache(final String[] prefixes, final int maxSize, final HelperData helper) {
+        this.prefixes = new String[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++) {
+            final String p = prefixes[i].trim();
+            this.prefixes[i] = p.length() > 1 && p.endsWith("/") ? p.substring(0, p.length() - 1) : p;
+        }
+        this.maxSize = maxSize;
+        this.helper = helper;
+        this.snapshots = Collections.synchronizedMap(new LinkedHashMap<String, NodeSnapshot>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, NodeSnapshot> eldest) {
+                return size() > SharedContentCache.this.maxSize;
+            }
+        });
+    }
+
+    /**
+     * Start caching. This logs in the service session used to read the
+     * snapshots and registers the invalidation listener for the cached
+     * paths and the access control policies of their ancestors.
+     * @param repository The repository
+     * @param listenerConfig The listener base configuration
+     * @throws RepositoryException If login or the listener registration fails
+     */
+    @SuppressWarnings("deprecation")
+    void start(final SlingRepository repository, final JcrListenerBaseConfig listenerConfig)
+    throws RepositoryException {
+        final Session s = repository.loginService(SUBSERVICE_NAME, repository.getDefaultWorkspace());
+        try {
+            listenerConfig.register(this, new PathObserverConfiguration(this.getObservedPaths()));
+        } catch (final RepositoryException re) {
+            s.logout();
+            throw re;
+        }
+        this.listenerConfig = listenerConfig;
+        this.session = s;
+    }
+
+    /**
+     * Stop caching and clear the cache.
+     */
+    void stop() {
+        final Session s = this.session;
+        this.session = null;
+        if (this.listenerConfig != null) {
+            this.listenerConfig.unregister(this);
+            this.listenerConfig = null;
+        }
+        if (s != null) {
+            synchronized (s) {
+                s.logout();
+            }
+        }
+        this.snapshots.clear();
+    }
+
+    /**
+     * The cached paths and the policy nodes of all their ancestors.
+     */
+    private String[] getObservedPaths() {
+        final Set<String> paths = new LinkedHashSet<String>();
+        for (final String prefix : this.prefixes) {
+            paths.add(prefix);
+            String parent = ResourceUtil.getParent(prefix);
+            while (parent != null) {
+                paths.add("/".equals(parent) ? "/" + POLICY_NAME : parent + '/' + POLICY_NAME);
+                parent = ResourceUtil.getParent(parent);
+            }
+        }
+        return paths.toArray(new String[paths.size()]);
+    }
+
+    /**
+     * Check whether the path is below one of the configured prefixes and the
+     * cache is active.
+     * @param path The path
+     * @return {@code true} if the path might be served from this cache
+     */
+    boolean isCacheable(final String path) {
+        if (this.session == null) {
+            return false;
+        }
+        for (final String prefix : this.prefixes) {
+            if (path.startsWith(prefix)
+                    && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/' || "/".equals(prefix))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the snapshot for a path. If the snapshot is not cached yet, it is
+     * created.
+     * @param path The path
+     * @return The snapshot or {@code null} if the node does not exist or can't be shared
+     */
+    NodeSnapshot get(final String path) {
+        NodeSnapshot snapshot = this.snapshots.get(path);
+        if (snapshot == null) {
+            snapshot = this.load(path);
+        }
+        return snapshot == NOT_SHAREABLE ? null : snapshot;
+    }
+
+    private NodeSnapshot load(final String path) {
+        final Session s = this.session;
+        if (s == null) {
+            return null;
+        }
+        final long startGeneration = this.generation.get();
+        NodeSnapshot snapshot = null;
+        synchronized (s) {
+            try {
+                s.refresh(false);
+                // non existing nodes and properties are marked as not shareable,
+                // the resolver session is used for those
+                if (s.nodeExists(path) && this.isReadableByEveryone(s, path)) {
+                    snapshot = this.createSnapshot(s.getNode(path));
+                }
+            } catch (final RepositoryException re) {
+                // this includes missing read access control permissions of the service
+                logger.debug("Unable to create snapshot for {}", path, re);
+            }
+        }
+        if (snapshot == null) {
+            snapshot = NOT_SHAREABLE;
+        }
+        // don't cache if the content changed while the snapshot was created
+        if (this.generation.get() == startGeneration) {
+            synchronized (this.snapshots) {
+                final NodeSnapshot old = this.snapshots.get(path);
+                if (old != null) {
+                    snapshot = old;
+                } else {
+                    this.snapshots.put(path, snapshot);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private boolean isReadableByEveryone(final Session s, final String path) throws RepositoryException {
+        if (!(s instanceof JackrabbitSession)) {
+            return false;
+        }
+        final AccessControlManager acMgr = s.getAccessControlManager();
+        if (!(acMgr instanceof JackrabbitAccessControlManager)) {
+            return false;
+        }
+        final Principal everyone = ((JackrabbitSession) s).getPrincipalManager().getEveryone();
+        if (!((JackrabbitAccessControlManager) acMgr).hasPrivileges(path,
+                Collections.singleton(everyone),
+                new Privilege[] {acMgr.privilegeFromName(Privilege.JCR_READ)})) {
+            return false;
+        }
+        // entries for other principals or with restrictions might hide the node
+        // or some of its properties from some of the resolvers
+        for (final AccessControlPolicy policy : acMgr.getEffectivePolicies(path)) {
+            if (!(policy instanceof JackrabbitAccessControlList)) {
+                return false;
+            }
+            for (final AccessControlEntry entry : ((JackrabbitAccessControlList) policy).getAccessControlEntries()) {
+                if (!(entry instanceof JackrabbitAccessControlEntry)) {
+                    return false;
+                }
+                final JackrabbitAccessControlEntry jEntry = (JackrabbitAccessControlEntry) entry;
+                if (jEntry.getRestrictionNames().length > 0) {
+                    return false;
+                }
+                // allow entries for other principals only grant more
+                if (!jEntry.isAllow() && !everyone.getName().equals(jEntry.getPrincipal().getName())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private NodeSnapshot createSnapshot(final Node node) throws RepositoryException {
+        final JcrNodeResource resource = new JcrNodeResource(null, node.getPath(), null, node, this.helper);
+
+        final PropertyIterator pi = node.getProperties();
+        while (pi.hasNext()) {
+            if (pi.nextProperty().getType() == PropertyType.BINARY) {
+                // binaries are bound to the session, don't share such nodes
+                return null;
+            }
+        }
+        final Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        for (final Map.Entry<String, Object> entry : resource.adaptTo(ValueMap.class).entrySet()) {
+            properties.put(entry.getKey(), entry.getValue());
+        }
+
+        final Map<String, Object> metadata = new HashMap<String, Object>();
+        for (final String key : METADATA_KEYS) {
+            final Object value = resource.getResourceMetadata().get(key);
+            if (value != null) {
+                metadata.put(key, value);
+            }
+        }
+
+        final List<String> childNames = new ArrayList<String>();
+        final NodeIterator children = node.getNodes();
+        while (children.hasNext()) {
+            childNames.add(children.nextNode().getName());
+        }
+
+        return new NodeSnapshot(resource.getResourceType(), resource.getResourceSuperType(),
+                Collections.unmodifiableMap(properties),
+                Collections.unmodifiableMap(metadata),
+                Collections.unmodifiableList(childNames));
+    }
+
+    /**
+     * Invalidate the snapshots of paths changed and committed through a
+     * resource resolver. This does not wait for the observation events, so
+     * the resolver reads its own changes.
+     * @param paths The paths of the changed nodes, including the removed subtrees
+     */
+    void invalidate(final Collection<String> paths) {
+        this.generation.incrementAndGet();
+        for (final String path : paths) {
+            this.removeTree(path);
+            this.snapshots.remove(ResourceUtil.getParent(path));
+        }
+    }
+
+    /**
+     * Invalidate all snapshots affected by the events.
+     * @see javax.jcr.observation.EventListener#onEvent(javax.jcr.observation.EventIterator)
+     */
+    @Override
+    public void onEvent(final EventIterator events) {
+        this.generation.incrementAndGet();
+        while (events.hasNext()) {
+            final Event event = events.nextEvent();
+            final String path;
+            try {
+                path = event.getPath();
+            } catch (final RepositoryException e) {
+                // nothing we can do, drop everything to be safe
+                this.snapshots.clear();
+                continue;
+            }
+            final int type = event.getType();
+            final String policyOwner = getPolicyOwner(path);
+            if (policyOwner != null) {
+                // access control changes affect the whole subtree
+                this.removeTree(policyOwner);
+            } else if (type == NODE_ADDED) {
+                this.snapshots.remove(path);
+                this.snapshots.remove(ResourceUtil.getParent(path));
+            } else if (type == NODE_REMOVED || type == NODE_MOVED) {
+                this.removeTree(path);
+                this.snapshots.remove(ResourceUtil.getParent(path));
+            } else {
+                // property event
+                this.snapshots.remove(ResourceUtil.getParent(path));
+            }
+        }
+    }
+
+    /**
+     * Get the path of the node owning the policy, if the path is a policy
+     * node or below one.
+     * @return The path of the access controlled node or {@code null}
+     */
+    private static String getPolicyOwner(final String path) {
+        final int pos = path.indexOf('/' + POLICY_NAME);
+        final int end = pos + 1 + POLICY_NAME.length();
+        if (pos == -1 || (end < path.length() && path.charAt(end) != '/')) {
+            return null;
+        }
+        return pos == 0 ? "/" : path.substring(0, pos);
+    }
+
+    private void removeTree(final String path) {
+        if ("/".equals(path)) {
+            this.snapshots.clear();
+            return;
+        }
+        final String prefix = path.concat("/");
+        synchronized (this.snapshots) {
+            this.snapshots.remove(path);
+            final Iterator<String> i = this.snapshots.keySet().iterator();
+            while (i.hasNext()) {
+                if (i.next().startsWith(prefix)) {
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * An immutable snapshot of a node.
+     */
+    static final class NodeSnapshot {
+
+        private final String resourceType;
+
+        private final String resourceSuperType;
+
+        private final Map<String, Object> properties;
+
+        private final Map<String, Object> metadata;
+
+        private final List<String> childNames;
+
+        NodeSnapshot(final String resourceType,
+                final String resourceSuperType,
+                final Map<String, Object> properties,
+                final Map<String, Object> metadata,
+                final List<String> childNames) {
+            this.resourceType = resourceType;
+            this.resourceSuperType = resourceSuperType;
+            this.properties = properties;
+            this.metadata = metadata;
+            this.childNames = childNames;
+        }
+
+        String getResourceType() {
+            return resourceType;
+        }
+
+        String getResourceSuperType() {
+            return resourceSuperType;
+        }
+
+        List<String> getChildNames() {
+            return childNames;
+        }
+
+        /**
+         * Copy the properties. Mutable values like arrays and calendars are
+         * copied as well, so callers can't modify the shared snapshot.
+         * @return A new map with the properties
+         */
+        Map<String, Object> copyProperties() {
+            final Map<String, Object> copy = new LinkedHashMap<String, Object>(properties.size());
+            for (final Map.Entry<String, Object> entry : properties.entrySet()) {
+                copy.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+            return copy;
+        }
+
+        /**
+         * Create new resource metadata for a resource based on this snapshot.
+         * @return The resource metadata
+         */
+        ResourceMetadata createMetadata() {
+            final ResourceMetadata result = new ResourceMetadata();
+            for (final Map.Entry<String, Object> entry : metadata.entrySet()) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+            return result;
+        }
+
+        private static Object copyValue(final Object value) {
+            if (value instanceof Calendar) {
+                return ((Calendar) value).clone();
+            } else if (value instanceof Object[]) {
+                final Object[] copy = ((Object[]) value).clone();
+                for (int i = 0; i < copy.length; i++) {
+                    copy[i] = copyValue(copy[i]);
+                }
+                return copy;
+            }
+            return value;
+        }
+    }
+}
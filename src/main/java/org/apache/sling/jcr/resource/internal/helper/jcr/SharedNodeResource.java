@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.helper.jcr.SharedContentCache.NodeSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A node resource served from the {@link SharedContentCache}. Type, properties
+ * and children are taken from the snapshot; the node itself is only fetched
+ * from the session of the resolver if it is requested.
+ */
+class SharedNodeResource extends JcrNodeResource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedNodeResource.class);
+
+    private final NodeSnapshot snapshot;
+
+    private final JcrItemResourceFactory factory;
+
+    private boolean nodeResolved;
+
+    private Node node;
+
+    SharedNodeResource(final ResourceResolver resourceResolver,
+            final String path,
+            final NodeSnapshot snapshot,
+            final JcrItemResourceFactory factory,
+            final HelperData helper) {
+        super(resourceResolver, path, null, null, snapshot.createMetadata(), helper, factory);
+        this.snapshot = snapshot;
+        this.factory = factory;
+    }
+
+    @Override
+    protected Node getItem() {
+        if (!this.nodeResolved) {
+            this.nodeResolved = true;
+            try {
+                this.node = this.factory.getSession().getNode(this.path);
+            } catch (final RepositoryException re) {
+                LOGGER.debug("Unable to get node for shared resource {}", this.path, re);
+            }
+        }
+        return this.node;
+    }
+
+    @Override
+    public String getResourceType() {
+        return this.snapshot.getResourceType();
+    }
+
+    @Override
+    public String getResourceSuperType() {
+        return this.snapshot.getResourceSuperType();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <Type> Type adaptTo(final Class<Type> type) {
+        if (type == Map.class || type == ValueMap.class) {
+            return (Type) new SnapshotValueMap(this.snapshot.copyProperties()); // unchecked cast
+        }
+        return super.adaptTo(type);
+    }
+
+    private ValueMap getNodeValueMap() {
+        return getItem() == null ? null : super.adaptTo(ValueMap.class);
+    }
+
+    @Override
+    Iterator<Resource> listJcrChildren() {
+        if (this.snapshot.getChildNames().isEmpty()) {
+            return null;
+        }
+        final String prefix = "/".equals(this.path) ? this.path : this.path.concat("/");
+        final Iterator<String> names = this.snapshot.getChildNames().iterator();
+        return new Iterator<Resource>() {
+
+            private Resource next = seek();
+
+            private Resource seek() {
+                while (names.hasNext()) {
+                    try {
+                        final Resource child = factory.createResource(getResourceResolver(),
+                                prefix.concat(names.next()), null, null);
+                        if (child != null) {
+                            return child;
+                        }
+                    } catch (final RepositoryException re) {
+                        LOGGER.error("listChildren: Cannot get child of " + path, re);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public Resource next() {
+                if (this.next == null) {
+                    throw new NoSuchElementException();
+                }
+                final Resource result = this.next;
+                this.next = seek();
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("remove");
+            }
+        };
+    }
+
+    /**
+     * Value map on the snapshot properties. Relative paths are not part of
+     * the snapshot and are read from the node.
+     */
+    private final class SnapshotValueMap extends ValueMapDecorator {
+
+        SnapshotValueMap(final Map<String, Object> properties) {
+            super(properties);
+        }
+
+        @Override
+        public Object get(final Object key) {
+            final String name = key == null ? null : normalize(key.toString());
+            if (name != null && name.indexOf('/') != -1) {
+                final ValueMap nodeMap = getNodeValueMap();
+                return nodeMap == null ? null : nodeMap.get(name);
+            }
+            return super.get(name);
+        }
+
+        @Override
+        public <T> T get(final String name, final Class<T> type) {
+            final String key = name == null ? null : normalize(name);
+            if (key != null && key.indexOf('/') != -1) {
+                final ValueMap nodeMap = getNodeValueMap();
+                return nodeMap == null ? null : nodeMap.get(key, type);
+            }
+            return super.get(key, type);
+        }
+
+        private String normalize(final String name) {
+            return name.startsWith("./") ? name.substring(2) : name;
+        }
+    }
+}
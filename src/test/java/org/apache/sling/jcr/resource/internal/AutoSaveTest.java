@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import javax.jcr.Session;
+
+import org.junit.Test;
+
+/**
+ * Test of AutoSave and AutoSaveStatistics.
+ */
+public class AutoSaveTest {
+
+    @Test public void testThreshold() throws Exception {
+        final Session session = mock(Session.class);
+        final AutoSaveStatistics stats = new AutoSaveStatistics();
+        final AutoSave autoSave = new AutoSave(session, 3, stats);
+        assertEquals(1, stats.getActiveResolvers());
+
+        autoSave.modified(1);
+        autoSave.modified(1);
+        verify(session, times(0)).save();
+        autoSave.modified(2);
+        verify(session, times(1)).save();
+        assertEquals(0, autoSave.getPending());
+
+        autoSave.modified(1);
+        autoSave.save();
+        verify(session, times(2)).save();
+
+        assertEquals(1, stats.getAutoSaves());
+        assertEquals(1, stats.getCommits());
+        assertEquals(5, stats.getModificationsSaved());
+        assertEquals(4, stats.getMaxTransientSize());
+
+        autoSave.modified(2);
+        autoSave.reverted();
+        assertEquals(0, autoSave.getPending());
+
+        autoSave.close();
+        assertEquals(0, stats.getActiveResolvers());
+    }
+}
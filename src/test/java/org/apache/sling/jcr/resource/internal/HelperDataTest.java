@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jcr.Session;
+
+import org.apache.sling.api.resource.external.URIProvider;
+import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test of HelperData.
+ */
+public class HelperDataTest {
+
+    @Test public void testNamespacePrefixes() throws Exception {
+        final HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(),
+                new AtomicReference<URIProvider[]>());
+        final Session first = mock(Session.class);
+        when(first.getNamespacePrefixes()).thenReturn(new String[] {"jcr", "nt"});
+        final Session second = mock(Session.class);
+        when(second.getNamespacePrefixes()).thenReturn(new String[] {"jcr", "nt", "sling"});
+
+        assertTrue(helper.isNamespacePrefix(first, "jcr"));
+        // the prefixes are shared between sessions
+        assertFalse(helper.isNamespacePrefix(second, "sling"));
+        verify(first, times(1)).getNamespacePrefixes();
+        verify(second, times(0)).getNamespacePrefixes();
+
+        helper.resetNamespacePrefixes();
+        assertTrue(helper.isNamespacePrefix(second, "sling"));
+    }
+
+    @Test public void testResetWhileReading() throws Exception {
+        final HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(),
+                new AtomicReference<URIProvider[]>());
+        final Session session = mock(Session.class);
+        when(session.getNamespacePrefixes()).thenAnswer(new Answer<String[]>() {
+
+            private int count;
+
+            @Override
+            public String[] answer(final InvocationOnMock invocation) {
+                if (count++ == 0) {
+                    // a registration while the prefixes are read
+                    helper.resetNamespacePrefixes();
+                    return new String[] {"jcr"};
+                }
+                return new String[] {"jcr", "sling"};
+            }
+        });
+
+        assertFalse(helper.isNamespacePrefix(session, "sling"));
+        // the prefixes read before the reset are not kept
+        assertTrue(helper.isNamespacePrefix(session, "sling"));
+        verify(session, times(2)).getNamespacePrefixes();
+    }
+
+    @Test public void testKeyNames() throws Exception {
+        final HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(),
+                new AtomicReference<URIProvider[]>());
+        final Session session = mock(Session.class);
+        when(session.getNamespacePrefixes()).thenReturn(new String[] {"jcr", "nt"});
+
+        assertTrue(HelperData.isPlainName("sling_resourceType-2"));
+        assertFalse(HelperData.isPlainName("1abc"));
+        assertFalse(HelperData.isPlainName("a_x0031_"));
+        assertFalse(HelperData.isPlainName("a.b"));
+
+        assertEquals("title", helper.escapeKeyName(session, "title"));
+        assertEquals("jcr:title", helper.escapeKeyName(session, "jcr:title"));
+        assertEquals("foo%3Abar", helper.escapeKeyName(session, "foo:bar"));
+        // cached
+        assertEquals("foo%3Abar", helper.escapeKeyName(session, "foo:bar"));
+        verify(session, times(1)).getNamespacePrefixes();
+
+        assertEquals("foo:bar", helper.unescapeKeyName("foo%3Abar"));
+        assertEquals("1abc", helper.unescapeKeyName("_x0031_abc"));
+        assertEquals("_x0031_abc", helper.getLegacyKeyName("1abc"));
+        assertEquals("jcr:title", helper.unescapeKeyName("jcr:title"));
+    }
+}
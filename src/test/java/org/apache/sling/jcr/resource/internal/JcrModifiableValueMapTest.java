@@ -26,6 +26,7 @@ import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -36,6 +37,7 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.jcr.Node;
+import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
@@ -176,6 +178,56 @@ public class JcrModifiableValueMapTest extends RepositoryTestBase {
         assertContains(pvm2, currentlyStored);
     }
 
+    public void testPutWithoutRead()
+    throws Exception {
+        getSession().refresh(false);
+        final ModifiableValueMap pvm = new JcrModifiableValueMap(this.rootNode, getHelperData());
+
+        // old values are returned without reading the whole node first
+        assertEquals("test", pvm.put("string", "overwrite"));
+        assertNull(pvm.put("something", "Another value"));
+        assertEquals(1L, pvm.remove("long"));
+
+        final Map<String, Object> currentlyStored = this.initialSet();
+        currentlyStored.put("something", "Another value");
+        currentlyStored.put("string", "overwrite");
+        currentlyStored.remove("long");
+        assertContains(pvm, currentlyStored);
+        assertFalse(pvm.containsKey("long"));
+        assertTrue(pvm.keySet().containsAll(currentlyStored.keySet()));
+        assertFalse(pvm.keySet().contains("long"));
+    }
+
+    public void testPrimitiveArrays()
+    throws Exception {
+        getSession().refresh(false);
+        final ModifiableValueMap pvm = new JcrModifiableValueMap(this.rootNode, getHelperData());
+        pvm.put("longs", new long[] {1, 2, 3});
+        pvm.put("ints", new int[] {4, 5});
+        pvm.put("doubles", new double[] {1.5, 2.5});
+        pvm.put("booleans", new boolean[] {true, false});
+        getSession().save();
+
+        // the cached array must not be handed out
+        pvm.get("longs", long[].class)[0] = 10;
+        assertTrue(Arrays.equals(new long[] {1, 2, 3}, pvm.get("longs", long[].class)));
+
+        assertEquals(PropertyType.LONG, this.rootNode.getProperty("ints").getType());
+        assertEquals(PropertyType.DOUBLE, this.rootNode.getProperty("doubles").getType());
+
+        final ValueMap vm = new JcrModifiableValueMap(this.rootNode, getHelperData());
+        assertTrue(Arrays.equals(new long[] {1, 2, 3}, vm.get("longs", long[].class)));
+        assertTrue(Arrays.equals(new int[] {1, 2, 3}, vm.get("longs", int[].class)));
+        assertTrue(Arrays.equals(new double[] {4, 5}, vm.get("ints", double[].class)));
+        assertTrue(Arrays.equals(new double[] {1.5, 2.5}, vm.get("doubles", double[].class)));
+        assertTrue(Arrays.equals(new boolean[] {true, false}, vm.get("booleans", boolean[].class)));
+        assertTrue(Arrays.equals(new Long[] {4L, 5L}, vm.get("ints", Long[].class)));
+
+        // generic conversion
+        assertTrue(Arrays.equals(new long[] {1, 2}, vm.get("doubles", long[].class)));
+        assertTrue(Arrays.equals(new long[] {1}, new JcrModifiableValueMap(this.rootNode, getHelperData()).get("long", long[].class)));
+    }
+
     public void testRemove()
     throws Exception {
         getSession().refresh(false);
@@ -192,7 +244,25 @@ public class JcrModifiableValueMapTest extends RepositoryTestBase {
         assertFalse(pvm.containsKey(key));
     }
 
-    public void testSerializable()
+    public void testValuesView()
+    throws Exception {
+        getSession().refresh(false);
+        final ModifiableValueMap pvm = new JcrModifiableValueMap(this.rootNode, getHelperData());
+
+        final Set<Map.Entry<String, Object>> entries = pvm.entrySet();
+        assertSame(entries, pvm.entrySet());
+        assertFalse(pvm.containsValue("viewValue"));
+
+        pvm.put("viewKey", "viewValue");
+        assertNotSame(entries, pvm.entrySet());
+        assertTrue(pvm.containsValue("viewValue"));
+        assertTrue(pvm.values().contains("viewValue"));
+
+        pvm.remove("viewKey");
+        assertFalse(pvm.containsValue("viewValue"));
+    }
+
+        public void testSerializable()
     throws Exception {
         this.rootNode.getSession().refresh(false);
         final ModifiableValueMap pvm = new JcrModifiableValueMap(this.rootNode, getHelperData());
@@ -19,15 +19,19 @@ package org.apache.sling.jcr.resource.internal;
 import static java.util.Collections.synchronizedList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.jcr.Credentials;
 import javax.jcr.LoginException;
@@ -67,6 +71,8 @@ public class JcrResourceListenerTest {
 
     private final List<ResourceChange> events = synchronizedList(new ArrayList<ResourceChange>());
 
+    private final Map<ObserverConfiguration, List<ResourceChange>> eventsPerConfig = new ConcurrentHashMap<ObserverConfiguration, List<ResourceChange>>();
+
     @SuppressWarnings("deprecation")
     @Before
     public void setUp() throws Exception {
@@ -298,6 +304,93 @@ public class JcrResourceListenerTest {
         }
     }
 
+    @Test
+    public void testCombinedConfigurations() throws Exception {
+        this.config.unregister(this.listener);
+        this.listener = null;
+        final Session session = this.adminSession;
+        final String rootPath = "/test" + System.currentTimeMillis() + "-combined";
+        final Node root = createNode(session, rootPath);
+        root.addNode("a", "nt:unstructured").addNode("x", "nt:unstructured");
+        root.addNode("b", "nt:unstructured");
+        session.save();
+        Thread.sleep(200);
+
+        final ObserverConfiguration added = createConfig(rootPath + "/a", rootPath + "/a/x", ChangeType.ADDED);
+        final ObserverConfiguration changed = createConfig(rootPath + "/b", null, ChangeType.CHANGED);
+        try ( final JcrResourceListener l = new JcrResourceListener(this.config, Arrays.asList(added, changed))) {
+            root.getNode("a").addNode("n1", "nt:unstructured");
+            root.getNode("a/x").addNode("n2", "nt:unstructured");
+            root.getNode("b").addNode("n3", "nt:unstructured");
+            session.save();
+            root.getNode("a/n1").setProperty("foo", "bar");
+            root.getNode("b/n3").setProperty("foo", "bar");
+            session.save();
+            Thread.sleep(1000);
+
+            // the combined filter delivers all of these changes, but each
+            // configuration only receives the matching ones
+            assertChanges(added, ChangeType.ADDED, rootPath + "/a/n1");
+            assertChanges(changed, ChangeType.CHANGED, rootPath + "/b/n3");
+
+            // updates take effect without losing the registration
+            final ObserverConfiguration addedB = createConfig(rootPath + "/b", null, ChangeType.ADDED);
+            l.update(Arrays.asList(addedB));
+            this.eventsPerConfig.clear();
+            root.getNode("a").addNode("n4", "nt:unstructured");
+            root.getNode("b").addNode("n5", "nt:unstructured");
+            session.save();
+            Thread.sleep(1000);
+
+            assertChanges(addedB, ChangeType.ADDED, rootPath + "/b/n5");
+            assertNull(this.eventsPerConfig.get(added));
+            assertNull(this.eventsPerConfig.get(changed));
+        }
+    }
+
+    private void assertChanges(final ObserverConfiguration c, final ChangeType type, final String path) {
+        final List<ResourceChange> changes = this.eventsPerConfig.get(c);
+        assertNotNull(changes);
+        assertEquals("Received: " + changes, 1, changes.size());
+        assertEquals(type, changes.get(0).getType());
+        assertEquals(path, changes.get(0).getPath());
+    }
+
+    private static ObserverConfiguration createConfig(final String path, final String excludedPath, final ChangeType type) {
+        return new ObserverConfiguration() {
+
+            @Override
+            public boolean includeExternal() {
+                return true;
+            }
+
+            @Override
+            public PathSet getPaths() {
+                return PathSet.fromStrings(path);
+            }
+
+            @Override
+            public PathSet getExcludedPaths() {
+                return excludedPath == null ? PathSet.fromPaths() : PathSet.fromStrings(excludedPath);
+            }
+
+            @Override
+            public Set<ChangeType> getChangeTypes() {
+                return EnumSet.of(type);
+            }
+
+            @Override
+            public boolean matches(String p) {
+                return this.getPaths().matches(p) != null && this.getExcludedPaths().matches(p) == null;
+            }
+
+            @Override
+            public Set<String> getPropertyNamesHint() {
+                return null;
+            }
+        };
+    }
+
     private static Node createNode(final Session session, final String path) throws RepositoryException {
         final Node n = session.getRootNode().addNode(path.substring(1), "nt:unstructured");
         session.save();
@@ -386,6 +479,14 @@ public class JcrResourceListenerTest {
 
         @Override
         public void reportChanges(ObserverConfiguration config, Iterable<ResourceChange> changes, boolean distribute) {
+            List<ResourceChange> list = eventsPerConfig.get(config);
+            if ( list == null ) {
+                list = synchronizedList(new ArrayList<ResourceChange>());
+                eventsPerConfig.put(config, list);
+            }
+            for (ResourceChange c : changes) {
+                list.add(c);
+            }
             this.reportChanges(changes, distribute);
         }
     }
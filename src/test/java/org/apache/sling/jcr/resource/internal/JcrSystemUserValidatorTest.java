@@ -27,6 +27,9 @@ import javax.jcr.Session;
 import javax.jcr.Value;
 import javax.naming.NamingException;
 
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.jackrabbit.api.security.user.UserManager;
 import org.apache.sling.commons.testing.jcr.RepositoryTestBase;
 import org.apache.sling.jcr.api.SlingRepository;
 import org.junit.Before;
@@ -170,4 +173,31 @@ public class JcrSystemUserValidatorTest extends RepositoryTestBase {
         // administrators group is not a user at all (but considered valid)
         assertTrue(jcrSystemUserValidator.isValid(Collections.singleton(GROUP_ADMINISTRATORS), null, null));
     }
+
+    @Test
+    public void testCachedResults() throws Exception {
+        Field allowOnlySystemUsersField = jcrSystemUserValidator.getClass().getDeclaredField("allowOnlySystemUsers");
+        allowOnlySystemUsersField.setAccessible(true);
+        allowOnlySystemUsersField.set(jcrSystemUserValidator, true);
+
+        final String userId = "cached-system-user";
+        assertFalse(jcrSystemUserValidator.isValid(userId, null, null));
+        assertFalse(jcrSystemUserValidator.isValid(Collections.singleton(userId), null, null));
+
+        final UserManager userManager = ((JackrabbitSession) getSession()).getUserManager();
+        final User user = userManager.createSystemUser(userId, null);
+        getSession().save();
+        try {
+            // the negative results are still cached
+            assertFalse(jcrSystemUserValidator.isValid(userId, null, null));
+            assertFalse(jcrSystemUserValidator.isValid(Collections.singleton(userId), null, null));
+
+            jcrSystemUserValidator.clearCache();
+            assertTrue(jcrSystemUserValidator.isValid(userId, null, null));
+            assertTrue(jcrSystemUserValidator.isValid(Collections.singleton(userId), null, null));
+        } finally {
+            user.remove();
+            getSession().save();
+        }
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.Value;
+
+import org.apache.sling.api.resource.external.URIProvider;
+import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
+import org.junit.Test;
+
+public class JcrValueMapTest {
+
+    @Test
+    public void testPrefetchReadsValues() throws Exception {
+        final Value value = mock(Value.class);
+        when(value.getType()).thenReturn(PropertyType.STRING);
+        when(value.getString()).thenReturn("Title");
+        final Property prop = mock(Property.class);
+        when(prop.getName()).thenReturn("title");
+        when(prop.getType()).thenReturn(PropertyType.STRING);
+        when(prop.getValue()).thenReturn(value);
+        final PropertyIterator pi = mock(PropertyIterator.class);
+        when(pi.hasNext()).thenReturn(true, false);
+        when(pi.nextProperty()).thenReturn(prop);
+        final Node node = mock(Node.class);
+        when(node.getProperties(any(String[].class))).thenReturn(pi);
+
+        final HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(),
+                new AtomicReference<URIProvider[]>());
+        final JcrValueMap map = new JcrValueMap(node, helper);
+        map.prefetch(new String[] {"title"});
+        verify(prop, times(1)).getValue();
+
+        // the value is served without accessing the property again
+        assertEquals("Title", map.get("title"));
+        assertEquals("Title", map.get("title", String.class));
+        verify(prop, times(1)).getValue();
+        verify(prop, never()).getValues();
+        verify(node, never()).getProperty(anyString());
+    }
+}
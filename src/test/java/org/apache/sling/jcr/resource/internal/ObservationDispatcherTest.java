@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.path.PathSet;
+import org.apache.sling.spi.resource.provider.ObservationReporter;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+import org.junit.Test;
+
+/**
+ * Test of ObservationDispatcher.
+ */
+public class ObservationDispatcherTest {
+
+    private final List<ResourceChange> reported = Collections.synchronizedList(new ArrayList<ResourceChange>());
+
+    private final ObservationReporter reporter = new ObservationReporter() {
+
+        @Override
+        public void reportChanges(Iterable<ResourceChange> changes, boolean distribute) {
+            for (final ResourceChange c : changes) {
+                reported.add(c);
+            }
+        }
+
+        @Override
+        public void reportChanges(ObserverConfiguration config, Iterable<ResourceChange> changes, boolean distribute) {
+            reportChanges(changes, distribute);
+        }
+
+        @Override
+        public List<ObserverConfiguration> getObserverConfigurations() {
+            return Collections.emptyList();
+        }
+    };
+
+    private static ResourceChange change(final ChangeType type, final String path) {
+        return new JcrResourceChange(type, path, false, "admin");
+    }
+
+    @Test public void testCoalesce() throws Exception {
+        final ObserverConfiguration config = mock(ObserverConfiguration.class);
+        final ObservationDispatcher dispatcher = new ObservationDispatcher(reporter, 10000, 100);
+        dispatcher.submit(config, Arrays.asList(change(ChangeType.ADDED, "/a"), change(ChangeType.CHANGED, "/a")));
+        dispatcher.submit(config, Arrays.asList(change(ChangeType.CHANGED, "/a"), change(ChangeType.CHANGED, "/b")));
+        dispatcher.submit(config, Arrays.asList(change(ChangeType.CHANGED, "/b"), change(ChangeType.REMOVED, "/a")));
+        assertEquals(4, dispatcher.getPendingCount());
+        // closing reports all pending changes
+        dispatcher.close();
+
+        assertEquals(4, reported.size());
+        assertEquals(ChangeType.ADDED, reported.get(0).getType());
+        assertEquals(ChangeType.CHANGED, reported.get(1).getType());
+        assertEquals("/b", reported.get(2).getPath());
+        assertEquals(ChangeType.REMOVED, reported.get(3).getType());
+        assertEquals(6, dispatcher.getSubmittedCount());
+        assertEquals(2, dispatcher.getCoalescedCount());
+        assertEquals(4, dispatcher.getDeliveredCount());
+    }
+
+    @Test public void testFullQueue() throws Exception {
+        final ObserverConfiguration config = mock(ObserverConfiguration.class);
+        when(config.getPaths()).thenReturn(PathSet.fromStrings("/content"));
+        final ObservationDispatcher dispatcher = new ObservationDispatcher(reporter, 10000, 2);
+        try {
+            final List<ResourceChange> changes = new ArrayList<ResourceChange>();
+            for (int i = 0; i < 10; i++) {
+                changes.add(change(ChangeType.ADDED, "/content/a/" + i));
+            }
+            changes.add(new JcrResourceChange(ChangeType.REMOVED, "/content/b", true, null));
+            // does not wait, the changes which do not fit are merged
+            dispatcher.submit(config, changes);
+            assertEquals(9, dispatcher.getOverflowCount());
+            assertEquals(4, dispatcher.getMaxPendingCount());
+        } finally {
+            dispatcher.close();
+        }
+        assertEquals(4, reported.size());
+        assertEquals("/content/a/0", reported.get(0).getPath());
+        assertEquals("/content/a/1", reported.get(1).getPath());
+        assertEquals(ChangeType.ADDED, reported.get(2).getType());
+        assertEquals("/content/a", reported.get(2).getPath());
+        assertEquals("admin", reported.get(2).getUserId());
+        assertEquals(ChangeType.REMOVED, reported.get(3).getType());
+        assertEquals("/content/b", reported.get(3).getPath());
+        assertTrue(reported.get(3).isExternal());
+    }
+
+    @Test public void testFullQueueConfiguredPaths() throws Exception {
+        final ObserverConfiguration config = mock(ObserverConfiguration.class);
+        when(config.getPaths()).thenReturn(PathSet.fromStrings("/content/a/x", "/content/a/y"));
+        final ObservationDispatcher dispatcher = new ObservationDispatcher(reporter, 10000, 1);
+        try {
+            dispatcher.submit(config, Arrays.asList(change(ChangeType.ADDED, "/content/a/x/1"),
+                    change(ChangeType.ADDED, "/content/a/x/2"),
+                    change(ChangeType.ADDED, "/content/a/x/3"),
+                    change(ChangeType.ADDED, "/content/a/y/1"),
+                    change(ChangeType.CHANGED, "/content/a/x/4")));
+        } finally {
+            dispatcher.close();
+        }
+        // merged per type and never above the configured paths
+        assertEquals(4, reported.size());
+        assertEquals("/content/a/x/1", reported.get(0).getPath());
+        assertEquals(ChangeType.ADDED, reported.get(1).getType());
+        assertEquals("/content/a/x", reported.get(1).getPath());
+        assertEquals(ChangeType.ADDED, reported.get(2).getType());
+        assertEquals("/content/a/y/1", reported.get(2).getPath());
+        assertEquals(ChangeType.CHANGED, reported.get(3).getType());
+        assertEquals("/content/a/x/4", reported.get(3).getPath());
+    }
+
+    @Test public void testCoalesceByUser() throws Exception {
+        final ObserverConfiguration config = mock(ObserverConfiguration.class);
+        final ObservationDispatcher dispatcher = new ObservationDispatcher(reporter, 10000, 100);
+        dispatcher.submit(config, Arrays.<ResourceChange>asList(change(ChangeType.CHANGED, "/a"),
+                new JcrResourceChange(ChangeType.CHANGED, "/a", false, "other"),
+                new JcrResourceChange(ChangeType.CHANGED, "/a", true, null)));
+        dispatcher.close();
+
+        assertEquals(3, reported.size());
+        assertEquals(0, dispatcher.getCoalescedCount());
+    }
+
+    @Test public void testInterrupt() throws Exception {
+        final ObserverConfiguration config = mock(ObserverConfiguration.class);
+        final ObservationDispatcher dispatcher = new ObservationDispatcher(reporter, 10000, 100);
+        try {
+            dispatcher.submit(config, Arrays.asList(change(ChangeType.ADDED, "/a")));
+            for (final Thread t : getThreads()) {
+                if ("Apache Sling JCR Resource Change Dispatcher".equals(t.getName())) {
+                    t.interrupt();
+                    t.join(5000);
+                }
+            }
+            // the pending changes are flushed, later ones are reported directly
+            assertEquals(1, reported.size());
+            dispatcher.submit(config, Arrays.asList(change(ChangeType.ADDED, "/b")));
+            assertEquals(2, reported.size());
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test public void testCommonAncestor() {
+        assertEquals("/a/b", ObservationDispatcher.getCommonAncestor("/a/b", "/a/b"));
+        assertEquals("/a", ObservationDispatcher.getCommonAncestor("/a/b", "/a/c/d"));
+        assertEquals("/a", ObservationDispatcher.getCommonAncestor("/a", "/a/c"));
+        assertEquals("/", ObservationDispatcher.getCommonAncestor("/ab", "/a"));
+        assertEquals("/", ObservationDispatcher.getCommonAncestor("/", "/a"));
+    }
+
+    private static Thread[] getThreads() {
+        final Thread[] threads = new Thread[Thread.activeCount() * 2];
+        final int count = Thread.enumerate(threads);
+        return Arrays.copyOf(threads, count);
+    }
+}
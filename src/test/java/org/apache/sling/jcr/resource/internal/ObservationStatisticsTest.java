@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.path.PathSet;
+import org.apache.sling.spi.resource.provider.ObservationReporter;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+import org.junit.Test;
+
+/**
+ * Test of ObservationStatistics.
+ */
+public class ObservationStatisticsTest {
+
+    private static ObserverConfiguration config(final String path) {
+        final ObserverConfiguration config = mock(ObserverConfiguration.class);
+        when(config.getPaths()).thenReturn(PathSet.fromStrings(path));
+        when(config.getExcludedPaths()).thenReturn(PathSet.EMPTY_SET);
+        when(config.getChangeTypes()).thenReturn(EnumSet.allOf(ChangeType.class));
+        when(config.includeExternal()).thenReturn(true);
+        return config;
+    }
+
+    @Test public void testCounters() {
+        final ObservationStatistics stats = new ObservationStatistics();
+        final ObservationReporter reporter = mock(ObservationReporter.class);
+        final ObserverConfiguration apps = config("/apps");
+        final ObserverConfiguration content = config("/content");
+
+        final List<ResourceChange> changes = Arrays.<ResourceChange>asList(
+                new JcrResourceChange(ChangeType.ADDED, "/apps/a", false, "admin"),
+                new JcrResourceChange(ChangeType.CHANGED, "/apps/b", true, null));
+        stats.eventsProcessed(apps, 5, 0);
+        stats.report(reporter, apps, changes);
+        verify(reporter).reportChanges(apps, changes, false);
+        // a combined listener only counts in the totals
+        stats.eventsProcessed(null, 3, 0);
+        stats.report(reporter, content, Collections.<ResourceChange>singletonList(
+                new JcrResourceChange(ChangeType.REMOVED, "/content/a", false, "admin")));
+
+        assertEquals(8, stats.getEventsReceived());
+        assertEquals(3, stats.getChangesReported());
+        assertEquals(0, stats.getPendingChanges());
+
+        final TabularData data = stats.getObservers();
+        assertEquals(2, data.size());
+        for (final Object row : data.values()) {
+            final CompositeData cd = (CompositeData) row;
+            if (String.valueOf(apps.getPaths()).equals(cd.get("paths"))) {
+                assertEquals(5L, cd.get("eventsReceived"));
+                assertEquals(2L, cd.get("changesReported"));
+                assertEquals(1L, cd.get("externalChanges"));
+                assertEquals(1L, cd.get("localChanges"));
+            } else {
+                assertEquals(0L, cd.get("eventsReceived"));
+                assertEquals(1L, cd.get("changesReported"));
+                assertEquals(0L, cd.get("externalChanges"));
+            }
+        }
+
+        stats.retain(Collections.singletonList(apps));
+        assertEquals(1, stats.getObservers().size());
+        // totals are kept
+        assertEquals(3, stats.getChangesReported());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.path.PathSet;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+import org.junit.Test;
+
+/**
+ * Test of ObserverConfigurationMatcher.
+ */
+public class ObserverConfigurationMatcherTest {
+
+    private static ObserverConfiguration config(final PathSet paths,
+            final PathSet excludes,
+            final boolean external,
+            final Set<ChangeType> types) {
+        return new ObserverConfiguration() {
+
+            @Override
+            public boolean includeExternal() {
+                return external;
+            }
+
+            @Override
+            public PathSet getPaths() {
+                return paths;
+            }
+
+            @Override
+            public PathSet getExcludedPaths() {
+                return excludes;
+            }
+
+            @Override
+            public Set<ChangeType> getChangeTypes() {
+                return types;
+            }
+
+            @Override
+            public boolean matches(String path) {
+                return this.getPaths().matches(path) != null;
+            }
+
+            @Override
+            public Set<String> getPropertyNamesHint() {
+                return null;
+            }
+        };
+    }
+
+    private final ObserverConfiguration root = config(PathSet.fromStrings("/"), PathSet.fromStrings("/var"),
+            true, EnumSet.allOf(ChangeType.class));
+
+    private final ObserverConfiguration apps = config(PathSet.fromStrings("/apps", "/libs"), PathSet.EMPTY_SET,
+            false, EnumSet.allOf(ChangeType.class));
+
+    private final ObserverConfiguration added = config(PathSet.fromStrings("/content/site"), PathSet.EMPTY_SET,
+            true, EnumSet.of(ChangeType.ADDED));
+
+    private final ObserverConfiguration glob = config(PathSet.fromStrings("glob:/content/**/*.html"), PathSet.EMPTY_SET,
+            true, EnumSet.allOf(ChangeType.class));
+
+    private final ObserverConfigurationMatcher matcher = new ObserverConfigurationMatcher(
+            Arrays.asList(root, apps, added, glob));
+
+    private Set<ObserverConfiguration> match(final ChangeType type, final String path, final boolean external) {
+        return matcher.match(new JcrResourceChange(type, path, external, null));
+    }
+
+    private static Set<ObserverConfiguration> set(final ObserverConfiguration... configs) {
+        return new HashSet<ObserverConfiguration>(Arrays.asList(configs));
+    }
+
+    @Test public void testPaths() {
+        assertEquals(set(root, apps), match(ChangeType.CHANGED, "/apps/foo", false));
+        assertEquals(set(root, apps), match(ChangeType.CHANGED, "/libs", false));
+        assertEquals(set(root), match(ChangeType.CHANGED, "/applications", false));
+        assertEquals(set(root, added), match(ChangeType.ADDED, "/content/site/page", false));
+        assertEquals(set(root), match(ChangeType.CHANGED, "/content/site/page", false));
+    }
+
+    @Test public void testExcludedPaths() {
+        assertTrue(match(ChangeType.CHANGED, "/var/foo", false).isEmpty());
+    }
+
+    @Test public void testExternal() {
+        assertEquals(set(root), match(ChangeType.CHANGED, "/apps/foo", true));
+    }
+
+    @Test public void testGlob() {
+        assertEquals(set(root, glob), match(ChangeType.CHANGED, "/content/a/b.html", false));
+        assertEquals(set(root), match(ChangeType.CHANGED, "/content/a/b.txt", false));
+    }
+
+    @Test public void testAncestorRemove() {
+        assertEquals(set(root, apps, glob), match(ChangeType.REMOVED, "/", false));
+        assertEquals(set(root, glob), match(ChangeType.REMOVED, "/content", false));
+        assertEquals(set(root, glob), match(ChangeType.REMOVED, "/content/site", false));
+        assertEquals(Collections.singleton(root), match(ChangeType.REMOVED, "/etc", false));
+    }
+}
@@ -43,7 +43,7 @@ public class JcrNodeResourceIteratorTest extends TestCase {
 
     public void testEmpty() {
         NodeIterator ni = new MockNodeIterator(null);
-        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, null, null, ni, getHelperData(), null);
+        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, null, null, ni, getHelperData(), null, null);
 
         assertFalse(ri.hasNext());
 
@@ -59,7 +59,7 @@ public class JcrNodeResourceIteratorTest extends TestCase {
         String path = "/parent/path/node";
         Node node = new MockNode(path);
         NodeIterator ni = new MockNodeIterator(new Node[] { node });
-        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, null, null, ni, getHelperData(), null);
+        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, null, null, ni, getHelperData(), null, null);
 
         assertTrue(ri.hasNext());
         Resource res = ri.next();
@@ -84,7 +84,7 @@ public class JcrNodeResourceIteratorTest extends TestCase {
             nodes[i] = new MockNode(pathBase + i, "some:type" + i);
         }
         NodeIterator ni = new MockNodeIterator(nodes);
-        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, null, null, ni, getHelperData(), null);
+        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, null, null, ni, getHelperData(), null, null);
 
         for (int i=0; i < nodes.length; i++) {
             assertTrue(ri.hasNext());
@@ -107,7 +107,7 @@ public class JcrNodeResourceIteratorTest extends TestCase {
         String path = "/child";
         Node node = new MockNode(path);
         NodeIterator ni = new MockNodeIterator(new Node[] { node });
-        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, "/", null, ni, getHelperData(), null);
+        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, "/", null, ni, getHelperData(), null, null);
 
         assertTrue(ri.hasNext());
         Resource res = ri.next();
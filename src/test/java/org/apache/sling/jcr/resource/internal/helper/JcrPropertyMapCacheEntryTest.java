@@ -18,7 +18,15 @@
  */
 package org.apache.sling.jcr.resource.internal.helper;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.jcr.Property;
+import javax.jcr.PropertyType;
 
 import org.junit.Test;
 
@@ -74,4 +82,19 @@ public class JcrPropertyMapCacheEntryTest {
         assertNotNull(new JcrPropertyMapCacheEntry(new Character[0], null));
         assertNotNull(new JcrPropertyMapCacheEntry(new char[0], null));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLazyTypedRead() throws Exception {
+        final Property prop = mock(Property.class);
+        when(prop.getType()).thenReturn(PropertyType.LONG);
+        when(prop.getLong()).thenReturn(42L);
+
+        final JcrPropertyMapCacheEntry entry = new JcrPropertyMapCacheEntry(prop);
+        assertEquals(Integer.valueOf(42), entry.convertToType(Integer.class, null, null));
+        assertEquals(Long.valueOf(42), entry.convertToType(Long.class, null, null));
+        assertEquals("42", entry.convertToType(String.class, null, null));
+
+        // the generic value has never been created
+        verify(prop, never()).getValue();
+    }
+}
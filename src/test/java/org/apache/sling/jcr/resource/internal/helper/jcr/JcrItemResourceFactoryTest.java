@@ -21,17 +21,27 @@ package org.apache.sling.jcr.resource.internal.helper.jcr;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.jcr.Item;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.version.Version;
+import javax.jcr.version.VersionHistory;
+import javax.jcr.version.VersionManager;
 
+import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.commons.JcrUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.resource.external.URIProvider;
 import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.commons.testing.jcr.RepositoryTestBase;
+import org.apache.sling.jcr.resource.internal.AutoSave;
+import org.apache.sling.jcr.resource.internal.AutoSaveStatistics;
 import org.apache.sling.jcr.resource.internal.HelperData;
 
 public class JcrItemResourceFactoryTest extends RepositoryTestBase {
@@ -87,10 +97,126 @@ public class JcrItemResourceFactoryTest extends RepositoryTestBase {
         compareGetItemOrNull("", null);
     }
 
+    public void testItemCache() throws RepositoryException {
+        HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
+        JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().itemCacheSize(10), null);
+        assertNotNull(factory.createResource(null, EXISTING_NODE_PATH, null, null));
+        assertNull(factory.createResource(null, NON_EXISTING_NODE_PATH, null, null));
+
+        Node created = session.getRootNode().addNode(NON_EXISTING_NODE_PATH.substring(1));
+        try {
+            // the negative result is still cached
+            assertNull(factory.createResource(null, NON_EXISTING_NODE_PATH, null, null));
+
+            factory.clearCache();
+            assertNotNull(factory.createResource(null, NON_EXISTING_NODE_PATH, null, null));
+        } finally {
+            created.remove();
+        }
+    }
+
+    public void testItemCacheValueMapWrites() throws RepositoryException {
+        HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
+        JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().itemCacheSize(10), null);
+        String propertyPath = EXISTING_NODE_PATH + "/title";
+        assertNull(factory.createResource(null, propertyPath, null, null));
+
+        ModifiableValueMap properties = factory.createResource(null, EXISTING_NODE_PATH, null, null)
+                .adaptTo(ModifiableValueMap.class);
+        properties.put("title", "Title");
+        assertNotNull(factory.createResource(null, propertyPath, null, null));
+
+        properties.remove("title");
+        assertNull(factory.createResource(null, propertyPath, null, null));
+    }
+
+    public void testAutoSaveValueMapWrites() throws RepositoryException {
+        HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
+        AutoSave autoSave = new AutoSave(session, 2, new AutoSaveStatistics());
+        JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings(), autoSave);
+        ModifiableValueMap properties = factory.createResource(null, EXISTING_NODE_PATH, null, null)
+                .adaptTo(ModifiableValueMap.class);
+        properties.put("title", "Title");
+        assertEquals(1, autoSave.getPending());
+        properties.put("text", "Text");
+        assertEquals(0, autoSave.getPending());
+        assertFalse(session.hasPendingChanges());
+        autoSave.close();
+    }
+
+    public void testVersionCache() throws RepositoryException {
+        Node page = node.addNode("page", "nt:unstructured");
+        page.addMixin(JcrConstants.MIX_VERSIONABLE);
+        Node child = page.addNode("child", "nt:unstructured");
+        child.setProperty("title", "v1");
+        session.save();
+        Version version = session.getWorkspace().getVersionManager().checkpoint(page.getPath());
+        child.setProperty("title", "v2");
+        session.save();
+
+        HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
+        JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().itemCacheSize(100), null);
+        Map<String, String> parameters = Collections.singletonMap("v", version.getName());
+        for (int i = 0; i < 2; i++) {
+            JcrItemResource<?> resource = factory.createResource(null, child.getPath(), null, parameters);
+            assertNotNull(resource);
+            assertEquals("v1", resource.adaptTo(ValueMap.class).get("title"));
+            resource = factory.createResource(null, child.getPath() + "/title", null, parameters);
+            assertEquals("v1", resource.adaptTo(String.class));
+        }
+        assertNull(factory.createResource(null, child.getPath(), null, Collections.singletonMap("v", "missing")));
+        assertNull(factory.createResource(null, EXISTING_NODE_PATH, null, parameters));
+    }
+
+    public void testVersionCacheMixinChange() throws RepositoryException {
+        Node page = node.addNode("page", "nt:unstructured");
+        session.save();
+
+        HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
+        JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().itemCacheSize(100), null);
+        // no versionable node yet
+        assertNull(factory.createResource(null, page.getPath(), null, Collections.singletonMap("v", "1.0")));
+
+        factory.createResource(null, page.getPath(), null, null).adaptTo(ModifiableValueMap.class)
+                .put(JcrConstants.JCR_MIXINTYPES, new String[] {JcrConstants.MIX_VERSIONABLE});
+        session.save();
+        Version version = session.getWorkspace().getVersionManager().checkpoint(page.getPath());
+        assertNotNull(factory.createResource(null, page.getPath(), null, Collections.singletonMap("v", version.getName())));
+    }
+
+    public void testVersionLabelMoved() throws RepositoryException {
+        Node page = node.addNode("page", "nt:unstructured");
+        page.addMixin(JcrConstants.MIX_VERSIONABLE);
+        page.setProperty("title", "v1");
+        session.save();
+        VersionManager versionManager = session.getWorkspace().getVersionManager();
+        Version version1 = versionManager.checkpoint(page.getPath());
+        VersionHistory history = versionManager.getVersionHistory(page.getPath());
+        history.addVersionLabel(version1.getName(), "live", false);
+
+        HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
+        JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().itemCacheSize(100), null);
+        Map<String, String> parameters = Collections.singletonMap("v", "live");
+        assertEquals("v1", factory.createResource(null, page.getPath(), null, parameters).adaptTo(ValueMap.class).get("title"));
+
+        // neither checkin nor moving the label go through the resolver
+        page.setProperty("title", "v2");
+        session.save();
+        Version version2 = versionManager.checkpoint(page.getPath());
+        history.addVersionLabel(version2.getName(), "live", true);
+        assertEquals("v2", factory.createResource(null, page.getPath(), null, parameters).adaptTo(ValueMap.class).get("title"));
+    }
+
     private void compareGetItemOrNull(String path, String expectedPath) throws RepositoryException {
         HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
-        Item item1 = new JcrItemResourceFactory(session, helper).getItemOrNull(path);
-        Item item2 = new JcrItemResourceFactory(nonJackrabbitSession, helper).getItemOrNull(path);
+        Item item1 = new JcrItemResourceFactory(session, helper, new ResolverSettings(), null).getItemOrNull(path);
+        Item item2 = new JcrItemResourceFactory(nonJackrabbitSession, helper, new ResolverSettings(), null).getItemOrNull(path);
         if (expectedPath == null) {
             assertNull(item1);
             assertNull(item2);
@@ -20,7 +20,10 @@ package org.apache.sling.jcr.resource.internal.helper.jcr;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
@@ -35,6 +38,7 @@ import org.apache.sling.api.resource.ResourceMetadata;
 import org.apache.sling.api.resource.external.URIProvider;
 import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.jcr.resource.api.JcrResourceConstants;
+import org.apache.sling.jcr.resource.api.PagedChildren;
 import org.apache.sling.jcr.resource.internal.HelperData;
 
 public class JcrNodeResourceTest extends JcrItemResourceTestBase {
@@ -248,6 +252,107 @@ public class JcrNodeResourceTest extends JcrItemResourceTestBase {
         assertTrue(crossCheck2.isEmpty());
     }
 
+    public void testPrefetchChildren() throws Exception {
+        Node parent = rootNode.addNode("prefetch", JcrConstants.NT_UNSTRUCTURED);
+        for (int i = 0; i < 3; i++) {
+            Node child = parent.addNode("child" + i, JcrConstants.NT_UNSTRUCTURED);
+            child.setProperty("title", "Title " + i);
+            child.setProperty("text", "Text " + i);
+        }
+        getSession().save();
+
+        final HelperData helper = getHelperData();
+        helper.setChildPrefetch(true, new String[] {"title"});
+        JcrNodeResource jnr = new JcrNodeResource(null, parent.getPath(), null, parent, helper);
+        final List<Resource> children = new ArrayList<Resource>();
+        for (final Iterator<Resource> iter = jnr.listJcrChildren(); iter.hasNext(); ) {
+            children.add(iter.next());
+        }
+        assertEquals(3, children.size());
+
+        // only the prefetched property keeps the value read while listing
+        for (int i = 0; i < 3; i++) {
+            parent.getNode("child" + i).setProperty("title", "Changed");
+            parent.getNode("child" + i).setProperty("text", "Changed");
+        }
+        for (int i = 0; i < 3; i++) {
+            final Map<?, ?> props = children.get(i).adaptTo(Map.class);
+            assertEquals("Title " + i, props.get("title"));
+            assertEquals("Changed", props.get("text"));
+        }
+        getSession().refresh(false);
+    }
+
+    public void testNoPrefetchWithoutListing() throws Exception {
+        Node parent = rootNode.addNode("noprefetch", JcrConstants.NT_UNSTRUCTURED);
+        parent.addNode("child", JcrConstants.NT_UNSTRUCTURED).setProperty("title", "Title");
+        getSession().save();
+
+        final HelperData helper = getHelperData();
+        helper.setChildPrefetch(true, new String[] {"title"});
+        // iterators not created for listing children, e.g. for queries, do not prefetch
+        final Iterator<Resource> iter = new JcrNodeResourceIterator(null, null, null,
+                parent.getNodes(), helper, null, null);
+        final Resource child = iter.next();
+        parent.getNode("child").setProperty("title", "Changed");
+        assertEquals("Changed", child.adaptTo(Map.class).get("title"));
+        getSession().refresh(false);
+    }
+
+        public void testPagedChildren() throws Exception {
+        Node parent = rootNode.addNode("paged", JcrConstants.NT_UNSTRUCTURED);
+        for (int i = 0; i < 10; i++) {
+            parent.addNode("child" + i, JcrConstants.NT_UNSTRUCTURED);
+        }
+        getSession().save();
+
+        JcrNodeResource jnr = new JcrNodeResource(null, parent.getPath(), null, parent, getHelperData());
+        final PagedChildren paged = jnr.adaptTo(PagedChildren.class);
+        assertNotNull(paged);
+
+        Iterator<Resource> page = paged.listChildren(4, 3);
+        for (int i = 4; i < 7; i++) {
+            assertEquals(parent.getPath() + "/child" + i, page.next().getPath());
+        }
+        assertFalse(page.hasNext());
+
+        // last page is shorter
+        page = paged.listChildren(8, 3);
+        assertEquals("child8", page.next().getName());
+        assertEquals("child9", page.next().getName());
+        assertFalse(page.hasNext());
+
+        // no limit
+        int count = 0;
+        for (page = paged.listChildren(0, -1); page.hasNext(); page.next()) {
+            count++;
+        }
+        assertEquals(10, count);
+
+        assertFalse(paged.listChildren(10, 3).hasNext());
+        assertFalse(paged.listChildren(0, 0).hasNext());
+    }
+
+    public void testChildCount() throws Exception {
+        Node parent = rootNode.addNode("counted", JcrConstants.NT_UNSTRUCTURED);
+        Node leaf = rootNode.addNode("leaf", JcrConstants.NT_UNSTRUCTURED);
+        for (int i = 0; i < 5; i++) {
+            parent.addNode("child" + i, JcrConstants.NT_UNSTRUCTURED);
+        }
+        getSession().save();
+
+        JcrNodeResource jnr = new JcrNodeResource(null, parent.getPath(), null, parent, getHelperData());
+        assertTrue(jnr.hasChildren());
+        final PagedChildren paged = jnr.adaptTo(PagedChildren.class);
+        assertEquals(5, paged.getChildCount(-1));
+        assertEquals(5, paged.getChildCount(10));
+        assertEquals(2, paged.getChildCount(2));
+
+        JcrNodeResource leafResource = new JcrNodeResource(null, leaf.getPath(), null, leaf, getHelperData());
+        assertFalse(leafResource.hasChildren());
+        assertEquals(0, leafResource.adaptTo(PagedChildren.class).getChildCount(-1));
+    }
+
     public void testCorrectUTF8ByteLength() throws Exception {
         byte[] utf8bytes = "Übersättigung".getBytes("UTF-8");
         String name = "utf8file";
@@ -18,11 +18,28 @@
  */
 package org.apache.sling.jcr.resource.internal.helper.jcr;
 
+import java.io.ByteArrayInputStream;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.jcr.Node;
 import javax.jcr.Session;
 
+import org.apache.jackrabbit.commons.JcrUtils;
+import org.apache.sling.api.resource.external.URIProvider;
+import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.commons.testing.jcr.RepositoryTestBase;
+import org.apache.sling.jcr.resource.api.BatchResourceCreator;
+import org.apache.sling.jcr.resource.api.BulkResourceDeleter;
+import org.apache.sling.jcr.resource.internal.AutoSave;
+import org.apache.sling.jcr.resource.internal.AutoSaveStatistics;
+import org.apache.sling.jcr.resource.internal.HelperData;
 import org.apache.sling.spi.resource.provider.ResolveContext;
 import org.junit.Assert;
 import org.mockito.Mockito;
@@ -47,9 +64,140 @@ public class JcrResourceProviderTest extends RepositoryTestBase {
     public void testAdaptTo_Principal() {
         jcrResourceProvider = new JcrResourceProvider();
         ResolveContext ctx = Mockito.mock(ResolveContext.class);
-        Mockito.when(ctx.getProviderState()).thenReturn(new JcrProviderState(session, null, false));
+        Mockito.when(ctx.getProviderState()).thenReturn(new JcrProviderState(session, null, false, null, null,
+                new ResolverSettings(), null, null));
         Assert.assertNotNull(jcrResourceProvider.adaptTo(ctx, Principal.class));
     }
-}
 
+    public void testBatchCreate() throws Exception {
+        jcrResourceProvider = new JcrResourceProvider();
+        final HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
+        ResolveContext ctx = Mockito.mock(ResolveContext.class);
+        Mockito.when(ctx.getProviderState()).thenReturn(new JcrProviderState(session, helper, false, null, null,
+                new ResolverSettings(), null, null));
+        final BatchResourceCreator creator = (BatchResourceCreator) jcrResourceProvider.adaptTo(ctx, BatchResourceCreator.class);
+        Assert.assertNotNull(creator);
+
+        final String root = "/batch" + System.currentTimeMillis();
+        final Map<String, Map<String, Object>> resources = new LinkedHashMap<String, Map<String, Object>>();
+        resources.put(root, Collections.<String, Object>singletonMap("jcr:primaryType", "nt:unstructured"));
+        for(int i = 0; i < 5; i++) {
+            resources.put(root + "/child" + i, Collections.<String, Object>singletonMap("index", (long) i));
+        }
+        Assert.assertEquals(6, creator.create(resources, 2));
+        // the first four nodes have been saved
+        Assert.assertTrue(session.hasPendingChanges());
+        session.save();
+
+        final Node node = session.getNode(root);
+        Assert.assertEquals(5, node.getNodes().getSize());
+        Assert.assertEquals(3L, node.getNode("child3").getProperty("index").getLong());
+        node.remove();
+        session.save();
+    }
+
+    public void testBatchCreateAutoSave() throws Exception {
+        jcrResourceProvider = new JcrResourceProvider();
+        final HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
+        final AutoSave autoSave = new AutoSave(session, 100, new AutoSaveStatistics());
+        ResolveContext ctx = Mockito.mock(ResolveContext.class);
+        Mockito.when(ctx.getProviderState()).thenReturn(new JcrProviderState(session, helper, false, null, null,
+                new ResolverSettings(), null, autoSave));
+        final BatchResourceCreator creator = (BatchResourceCreator) jcrResourceProvider.adaptTo(ctx, BatchResourceCreator.class);
+
+        final String root = "/batch" + System.currentTimeMillis();
+        final Map<String, Map<String, Object>> resources = new LinkedHashMap<String, Map<String, Object>>();
+        resources.put(root, Collections.<String, Object>singletonMap("jcr:primaryType", "nt:unstructured"));
+        for(int i = 0; i < 5; i++) {
+            resources.put(root + "/child" + i, Collections.<String, Object>singletonMap("index", (long) i));
+        }
+        // the save threshold is ignored, the auto-save threshold is not reached
+        Assert.assertEquals(6, creator.create(resources, 2));
+        Assert.assertTrue(session.getNode(root).isNew());
+        Assert.assertEquals(12, autoSave.getPending());
+        session.refresh(false);
+        autoSave.close();
+    }
+
+    public void testCopy() throws Exception {
+        jcrResourceProvider = new JcrResourceProvider();
+        ResolveContext ctx = Mockito.mock(ResolveContext.class);
+        Mockito.when(ctx.getProviderState()).thenReturn(new JcrProviderState(session, null, false, null, null,
+                new ResolverSettings(), null, null));
+
+        final Node root = session.getRootNode().addNode("copy" + System.currentTimeMillis(), "nt:unstructured");
+        final Node src = root.addNode("src", "nt:unstructured");
+        src.setProperty("title", "Source");
+        src.setProperty("tags", new String[] {"a", "b"});
+        src.addNode("child", "nt:unstructured").setProperty("index", 1L);
+        root.addNode("saved", "nt:unstructured");
+        root.addNode("pending", "nt:unstructured");
+        session.save();
+
+        // the copy is only persisted with the commit
+        Assert.assertTrue(jcrResourceProvider.copy(ctx, src.getPath(), root.getPath() + "/saved"));
+        Assert.assertTrue(session.hasPendingChanges());
+        assertCopy(root.getNode("saved/src"));
+        jcrResourceProvider.revert(ctx);
+        Assert.assertFalse(root.hasNode("saved/src"));
+
+        // pending changes are copied as well
+        src.setProperty("title", "Changed");
+        Assert.assertTrue(jcrResourceProvider.copy(ctx, src.getPath(), root.getPath() + "/pending"));
+        Assert.assertTrue(session.hasPendingChanges());
+        final Node copy = root.getNode("pending/src");
+        Assert.assertEquals("Changed", copy.getProperty("title").getString());
+        Assert.assertEquals("nt:unstructured", copy.getPrimaryNodeType().getName());
+        Assert.assertEquals(2, copy.getProperty("tags").getValues().length);
+        Assert.assertEquals(1L, copy.getNode("child").getProperty("index").getLong());
+
+        root.remove();
+        session.save();
+    }
+
+    private static void assertCopy(final Node copy) throws Exception {
+        Assert.assertEquals("Source", copy.getProperty("title").getString());
+        Assert.assertEquals(2, copy.getProperty("tags").getValues().length);
+        Assert.assertEquals(1L, copy.getNode("child").getProperty("index").getLong());
+    }
+
+    public void testBulkDelete() throws Exception {
+        jcrResourceProvider = new JcrResourceProvider();
+        ResolveContext ctx = Mockito.mock(ResolveContext.class);
+        Mockito.when(ctx.getProviderState()).thenReturn(new JcrProviderState(session, null, false, null, null,
+                new ResolverSettings(), null, null));
+        final BulkResourceDeleter deleter = (BulkResourceDeleter) jcrResourceProvider.adaptTo(ctx, BulkResourceDeleter.class);
+        Assert.assertNotNull(deleter);
+
+        final Node root = session.getRootNode().addNode("delete" + System.currentTimeMillis(), "nt:unstructured");
+        for(int i = 0; i < 3; i++) {
+            final Node child = root.addNode("child" + i, "nt:unstructured");
+            for(int j = 0; j < 3; j++) {
+                child.addNode("node" + j, "nt:unstructured");
+            }
+        }
+        // the mandatory jcr:content is removed with the file
+        JcrUtils.putFile(root, "file.txt", "text/plain", new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        // but the children of a mandatory node are removed one by one
+        final Node content = root.addNode("file.json", "nt:file").addNode("jcr:content", "nt:unstructured");
+        content.addNode("a", "nt:unstructured");
+        content.addNode("b", "nt:unstructured");
+        session.save();
+        final String path = root.getPath();
 
+        final List<Long> progress = new ArrayList<Long>();
+        final long count = deleter.delete(path, 5, new BulkResourceDeleter.ProgressListener() {
+
+            @Override
+            public void deleted(final String deletedPath, final long deleted) {
+                Assert.assertEquals(path, deletedPath);
+                progress.add(deleted);
+            }
+        });
+        Assert.assertEquals(17, count);
+        Assert.assertEquals(Arrays.asList(5L, 10L, 15L, 17L), progress);
+        Assert.assertTrue(session.hasPendingChanges());
+        session.save();
+        Assert.assertFalse(session.nodeExists(path));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.jcr.PropertyType;
+import javax.jcr.Value;
+import javax.jcr.query.Row;
+
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.Test;
+
+/**
+ * Test of JcrRowValueMap.
+ */
+public class JcrRowValueMapTest {
+
+    private static Value stringValue(final String value) throws Exception {
+        final Value v = mock(Value.class);
+        when(v.getType()).thenReturn(PropertyType.STRING);
+        when(v.getString()).thenReturn(value);
+        return v;
+    }
+
+    @Test public void testLazyConversion() throws Exception {
+        final JcrRowValueMap.Columns columns = new JcrRowValueMap.Columns(new String[] {"title", "empty"});
+        final Row row = mock(Row.class);
+        final Value title = stringValue("Hello");
+        when(row.getValues()).thenReturn(new Value[] {title, null});
+        when(row.getPath()).thenReturn("/content/a");
+        when(row.getScore()).thenReturn(1.5d);
+
+        final ValueMap map = new ValueMapDecorator(new JcrRowValueMap(columns, row));
+        assertEquals("/content/a", map.get("jcr:path", String.class));
+        verify(row, never()).getValues();
+        verify(title, never()).getString();
+
+        assertEquals("Hello", map.get("title"));
+        assertEquals("Hello", map.get("title"));
+        verify(title, times(1)).getString();
+
+        assertNull(map.get("empty"));
+        assertFalse(map.containsKey("empty"));
+        assertNull(map.get("unknown"));
+        assertEquals(3, map.size());
+        assertEquals(1.5d, map.get("jcr:score", Double.class), 0.0);
+
+        map.put("extra", "value");
+        assertEquals("value", map.get("extra"));
+        assertEquals("Hello", map.get("title"));
+    }
+
+    @Test public void testPathColumn() throws Exception {
+        final JcrRowValueMap.Columns columns = new JcrRowValueMap.Columns(new String[] {"jcr:path"});
+        final Row row = mock(Row.class);
+        when(row.getValues()).thenReturn(new Value[] {null});
+        when(row.getPath()).thenReturn("/content/b");
+        assertEquals("/content/b", new JcrRowValueMap(columns, row).get("jcr:path"));
+
+        final Row other = mock(Row.class);
+        final Value path = stringValue("/content/c");
+        when(other.getValues()).thenReturn(new Value[] {path});
+        assertEquals("/content/c", new JcrRowValueMap(columns, other).get("jcr:path"));
+    }
+}
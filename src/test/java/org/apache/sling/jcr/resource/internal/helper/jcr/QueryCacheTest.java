@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+import javax.jcr.Workspace;
+import javax.jcr.query.InvalidQueryException;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of QueryCache.
+ */
+public class QueryCacheTest {
+
+    private static final String STATEMENT = "/jcr:root/content//*[@title = $title]";
+
+    private final Session session = mock(Session.class);
+
+    private final QueryManager queryManager = mock(QueryManager.class);
+
+    private final Query query = mock(Query.class);
+
+    private final Value value = mock(Value.class);
+
+    @Before public void setup() throws Exception {
+        final Workspace workspace = mock(Workspace.class);
+        final ValueFactory valueFactory = mock(ValueFactory.class);
+        when(session.getWorkspace()).thenReturn(workspace);
+        when(session.getValueFactory()).thenReturn(valueFactory);
+        when(valueFactory.createValue(anyString())).thenReturn(value);
+        when(workspace.getQueryManager()).thenReturn(queryManager);
+        when(queryManager.createQuery(STATEMENT, Query.JCR_SQL2)).thenReturn(query);
+        when(query.getBindVariableNames()).thenReturn(new String[] {"title"});
+    }
+
+    @Test public void testHints() throws Exception {
+        final QueryCache cache = new QueryCache(session, 5);
+        cache.execute(STATEMENT + " /* limit=10, offset=20, $title=News */", Query.JCR_SQL2);
+        verify(query).setLimit(10);
+        verify(query).setOffset(20);
+        verify(query).bindValue("title", value);
+
+        // prepared query is reused and the hints are reset
+        cache.execute(STATEMENT + " /* $title=Sports */", Query.JCR_SQL2);
+        verify(queryManager, times(1)).createQuery(STATEMENT, Query.JCR_SQL2);
+        verify(query).setLimit(Long.MAX_VALUE);
+        verify(query).setOffset(0);
+        verify(query, times(2)).execute();
+    }
+
+    @Test public void testDisabled() throws Exception {
+        final QueryCache cache = new QueryCache(session, 0);
+        cache.execute(STATEMENT + " /* $title=News */", Query.JCR_SQL2);
+        cache.execute(STATEMENT + " /* $title=News */", Query.JCR_SQL2);
+        verify(queryManager, times(2)).createQuery(STATEMENT, Query.JCR_SQL2);
+        verify(query, never()).setLimit(Long.MAX_VALUE);
+    }
+
+    @Test(expected = InvalidQueryException.class)
+    public void testInvalidHint() throws Exception {
+        new QueryCache(session, 5).execute(STATEMENT + " /* limit=-1 */", Query.JCR_SQL2);
+    }
+
+    @Test public void testUnboundVariable() throws Exception {
+        final QueryCache cache = new QueryCache(session, 5);
+        cache.execute(STATEMENT + " /* $title=News */", Query.JCR_SQL2);
+        try {
+            // the value bound by the previous execution must not be used
+            cache.execute(STATEMENT, Query.JCR_SQL2);
+            fail("Unbound variable not detected");
+        } catch (final InvalidQueryException iqe) {
+            // expected
+        }
+        verify(query, times(1)).execute();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RangeIterator;
+import javax.jcr.query.Query;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+/**
+ * Test of QueryStatistics.
+ */
+public class QueryStatisticsTest {
+
+    @Test public void testExecution() throws Exception {
+        final QueryStatistics statistics = new QueryStatistics();
+        statistics.setSlowQueryThreshold(1);
+
+        final QueryStatistics.Execution execution = statistics.start("SELECT * FROM [nt:base]", Query.JCR_SQL2, "admin");
+        execution.parsed(TimeUnit.MILLISECONDS.toNanos(2));
+        execution.executed(TimeUnit.MILLISECONDS.toNanos(3));
+
+        final RangeIterator rows = mock(RangeIterator.class);
+        // five rows read, two of them excluded
+        when(rows.getPosition()).thenReturn(5L);
+        final Iterator<String> iter = execution.track(Arrays.asList("a", "b", "c").iterator(), rows);
+        int count = 0;
+        while ( iter.hasNext() ) {
+            iter.next();
+            count++;
+        }
+        assertEquals(3, count);
+        // a second check after the end is not recorded again
+        iter.hasNext();
+
+        final CompositeData data = statistics.getLanguages().get(new Object[] {Query.JCR_SQL2});
+        assertEquals(1L, data.get("queries"));
+        assertEquals(2L, data.get("parseTime"));
+        assertEquals(3L, data.get("executeTime"));
+        assertEquals(5L, data.get("rowsRead"));
+        assertEquals(2L, data.get("rowsExcluded"));
+        assertEquals(1L, data.get("slowQueries"));
+
+        assertEquals(1, statistics.getSlowQueryCount());
+        assertEquals(1, statistics.getSlowQueries().length);
+        assertTrue(statistics.getSlowQueries()[0].contains("admin"));
+    }
+
+    @Test public void testSlowWithoutIteration() throws Exception {
+        final QueryStatistics statistics = new QueryStatistics();
+        statistics.setSlowQueryThreshold(10);
+
+        final QueryStatistics.Execution execution = statistics.start("//*", "xpath", "admin");
+        execution.executed(TimeUnit.MILLISECONDS.toNanos(20));
+        // logged right after the execution, even if the result is never iterated
+        assertEquals(1, statistics.getSlowQueryCount());
+        assertTrue(statistics.getSlowQueries()[0].contains("0 rows read so far"));
+
+        final RangeIterator rows = mock(RangeIterator.class);
+        final Iterator<String> iter = execution.track(Arrays.asList("a").iterator(), rows);
+        while ( iter.hasNext() ) {
+            iter.next();
+        }
+        // only logged once
+        assertEquals(1, statistics.getSlowQueryCount());
+    }
+
+        @Test public void testDisabledSlowQueryLog() throws Exception {
+        final QueryStatistics statistics = new QueryStatistics();
+        final QueryStatistics.Execution execution = statistics.start("//*", "xpath", "admin");
+        execution.executed(TimeUnit.SECONDS.toNanos(10));
+        final Iterator<String> iter = execution.track(Arrays.<String>asList().iterator(), mock(RangeIterator.class));
+        iter.hasNext();
+        assertEquals(0, statistics.getSlowQueryCount());
+        assertEquals(0, statistics.getSlowQueries().length);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.jcr.Session;
+
+import org.apache.sling.jcr.api.SlingRepository;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Test of ServiceSessionPool.
+ */
+public class ServiceSessionPoolTest {
+
+    @SuppressWarnings("unchecked")
+    private final ServiceReference<SlingRepository> ref = mock(ServiceReference.class);
+
+    private final BundleContext bc = mock(BundleContext.class);
+
+    private static Session liveSession() {
+        final Session session = mock(Session.class);
+        when(session.isLive()).thenReturn(true);
+        return session;
+    }
+
+    @Test public void testReuse() throws Exception {
+        final ServiceSessionPool pool = new ServiceSessionPool(ref, 1, 60000);
+        assertNull(pool.borrow("1/sub", bc));
+        assertEquals(1, pool.getLoginCount());
+
+        final Session first = liveSession();
+        final Session second = liveSession();
+        pool.release("1/sub", first, bc);
+        // the pool is full
+        pool.release("1/sub", second, bc);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1, pool.getEvictionCount());
+        verify(second).logout();
+        verify(bc).ungetService(ref);
+
+        // other subservice
+        assertNull(pool.borrow("1/other", bc));
+        assertSame(first, pool.borrow("1/sub", bc));
+        verify(first, times(2)).refresh(false);
+        verify(first, never()).logout();
+        assertEquals(1, pool.getReuseCount());
+        assertEquals(1, pool.getReturnCount());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test public void testEviction() throws Exception {
+        final ServiceSessionPool pool = new ServiceSessionPool(ref, 5, -1);
+        final Session session = liveSession();
+        pool.release("1/", session, bc);
+        // expired immediately
+        assertNull(pool.borrow("1/", bc));
+        verify(session).logout();
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test public void testPeriodicEviction() throws Exception {
+        final ServiceSessionPool pool = new ServiceSessionPool(ref, 5, 10);
+        try {
+            final Session session = liveSession();
+            pool.release("1/", session, bc);
+            // evicted without any further pool operation
+            verify(session, timeout(5000)).logout();
+            verify(bc, timeout(5000)).ungetService(ref);
+            assertEquals(0, pool.getIdleCount());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test public void testRestartedBundle() throws Exception {
+        final ServiceSessionPool pool = new ServiceSessionPool(ref, 5, 60000);
+        final Session session = liveSession();
+        pool.release("1/", session, bc);
+        assertNull(pool.borrow("1/", mock(BundleContext.class)));
+        verify(session).logout();
+        verify(bc).ungetService(ref);
+    }
+
+    @Test public void testClose() throws Exception {
+        final ServiceSessionPool pool = new ServiceSessionPool(ref, 5, 60000);
+        final Session first = liveSession();
+        pool.release("1/", first, bc);
+        pool.close();
+        verify(first).logout();
+
+        final Session second = liveSession();
+        pool.release("1/", second, bc);
+        verify(second).logout();
+        assertEquals(0, pool.getIdleCount());
+    }
+}
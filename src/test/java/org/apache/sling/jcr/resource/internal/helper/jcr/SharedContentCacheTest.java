@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+import javax.jcr.security.Privilege;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.commons.JcrUtils;
+import org.apache.jackrabbit.commons.jackrabbit.authorization.AccessControlUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.resource.external.URIProvider;
+import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
+import org.apache.sling.commons.testing.jcr.RepositoryTestBase;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrListenerBaseConfig;
+
+public class SharedContentCacheTest extends RepositoryTestBase {
+
+    private static final String ROOT_PATH = "/sharedcache";
+
+    private static final String PRIVATE_PATH = ROOT_PATH + "/private";
+
+    private Node root;
+
+    private HelperData helper;
+
+    private JcrListenerBaseConfig listenerConfig;
+
+    private SlingRepository serviceRepo;
+
+    private SharedContentCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final Session session = getSession();
+        root = JcrUtils.getOrCreateByPath(ROOT_PATH, "nt:unstructured", session);
+        root.setProperty("title", "a");
+        root.addNode("child", "nt:unstructured");
+        root.addNode("private", "nt:unstructured");
+        final Principal everyone = ((JackrabbitSession) session).getPrincipalManager().getEveryone();
+        AccessControlUtils.addAccessControlEntry(session, ROOT_PATH, everyone, new String[] {Privilege.JCR_READ}, true);
+        AccessControlUtils.addAccessControlEntry(session, PRIVATE_PATH, everyone, new String[] {Privilege.JCR_READ}, false);
+        session.save();
+
+        // the test repository does not support service users
+        final SlingRepository repo = getRepository();
+        serviceRepo = (SlingRepository) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{SlingRepository.class},
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("loginService".equals(method.getName())) {
+                    return repo.loginAdministrative((String) args[1]);
+                }
+                return method.invoke(repo, args);
+            }
+        });
+
+        helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), new AtomicReference<URIProvider[]>());
+        listenerConfig = new JcrListenerBaseConfig(null, serviceRepo);
+        cache = new SharedContentCache(new String[] {ROOT_PATH}, 100, helper);
+        cache.start(serviceRepo, listenerConfig);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cache.stop();
+        listenerConfig.close();
+        root.remove();
+        session.save();
+        super.tearDown();
+    }
+
+    public void testSharedResource() throws Exception {
+        final JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().sharedCache(cache), null);
+        final JcrItemResource<?> resource = factory.createResource(null, ROOT_PATH, null, null);
+        assertTrue(resource instanceof SharedNodeResource);
+        assertEquals("nt:unstructured", resource.getResourceType());
+        assertEquals("a", resource.adaptTo(ValueMap.class).get("title", String.class));
+        assertEquals("a", resource.adaptTo(ValueMap.class).get("./title", String.class));
+        assertEquals(ROOT_PATH, resource.adaptTo(Node.class).getPath());
+
+        final Iterator<Resource> children = resource.listJcrChildren();
+        assertTrue(children.hasNext());
+        assertEquals(ROOT_PATH + "/child", children.next().getPath());
+        assertTrue(children.hasNext());
+        assertEquals(PRIVATE_PATH, children.next().getPath());
+        assertFalse(children.hasNext());
+
+        // the snapshot is never modified through a value map
+        resource.adaptTo(ValueMap.class).put("title", "changed");
+        assertEquals("a", resource.adaptTo(ValueMap.class).get("title", String.class));
+    }
+
+    public void testNotReadableByEveryone() throws Exception {
+        final JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().sharedCache(cache), null);
+        final JcrItemResource<?> resource = factory.createResource(null, PRIVATE_PATH, null, null);
+        assertNotNull(resource);
+        assertFalse(resource instanceof SharedNodeResource);
+    }
+
+    public void testDeniedForOtherPrincipal() throws Exception {
+        final String path = ROOT_PATH + "/denied";
+        JcrUtils.getOrCreateByPath(path, "nt:unstructured", session);
+        final Principal admin = ((JackrabbitSession) session).getPrincipalManager().getPrincipal("admin");
+        AccessControlUtils.addAccessControlEntry(session, path, admin, new String[] {Privilege.JCR_READ}, false);
+        session.save();
+
+        final JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().sharedCache(cache), null);
+        assertTrue(factory.createResource(null, ROOT_PATH, null, null) instanceof SharedNodeResource);
+        assertFalse(factory.createResource(null, path, null, null) instanceof SharedNodeResource);
+    }
+
+    public void testEviction() throws Exception {
+        cache.stop();
+        cache = new SharedContentCache(new String[] {ROOT_PATH}, 1, helper);
+        cache.start(serviceRepo, listenerConfig);
+
+        final JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().sharedCache(cache), null);
+        assertTrue(factory.createResource(null, ROOT_PATH, null, null) instanceof SharedNodeResource);
+        // a full cache evicts the least recently used snapshot
+        assertTrue(factory.createResource(null, ROOT_PATH + "/child", null, null) instanceof SharedNodeResource);
+        assertTrue(factory.createResource(null, ROOT_PATH, null, null) instanceof SharedNodeResource);
+    }
+
+    public void testPendingChanges() throws Exception {
+        final JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().sharedCache(cache), null);
+        root.setProperty("title", "pending");
+        try {
+            final JcrItemResource<?> resource = factory.createResource(null, ROOT_PATH, null, null);
+            assertFalse(resource instanceof SharedNodeResource);
+            assertEquals("pending", resource.adaptTo(ValueMap.class).get("title", String.class));
+        } finally {
+            session.refresh(false);
+        }
+    }
+
+    public void testInvalidation() throws Exception {
+        final JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().sharedCache(cache), null);
+        assertEquals("a", factory.createResource(null, ROOT_PATH, null, null).adaptTo(ValueMap.class).get("title"));
+
+        root.setProperty("title", "b");
+        session.save();
+
+        // observation is asynchronous
+        final long end = System.currentTimeMillis() + 5000;
+        Object title = null;
+        while (System.currentTimeMillis() < end) {
+            title = factory.createResource(null, ROOT_PATH, null, null).adaptTo(ValueMap.class).get("title");
+            if ("b".equals(title)) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+        assertEquals("b", title);
+    }
+
+    public void testCommitInvalidation() throws Exception {
+        final JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().sharedCache(cache), null);
+        assertEquals("a", factory.createResource(null, ROOT_PATH, null, null).adaptTo(ValueMap.class).get("title"));
+
+        root.setProperty("title", "b");
+        factory.nodeChanged(ROOT_PATH);
+        session.save();
+        // not shared until the changes are committed
+        assertFalse(factory.createResource(null, ROOT_PATH, null, null) instanceof SharedNodeResource);
+
+        // no need to wait for observation
+        factory.invalidateSharedCache();
+        final JcrItemResource<?> resource = factory.createResource(null, ROOT_PATH, null, null);
+        assertTrue(resource instanceof SharedNodeResource);
+        assertEquals("b", resource.adaptTo(ValueMap.class).get("title"));
+    }
+
+    public void testPolicyInvalidation() throws Exception {
+        final String path = ROOT_PATH + "/child";
+        final JcrItemResourceFactory factory = new JcrItemResourceFactory(session, helper,
+                new ResolverSettings().sharedCache(cache), null);
+        assertTrue(factory.createResource(null, path, null, null) instanceof SharedNodeResource);
+
+        // a policy of an ancestor drops the snapshots of the whole subtree
+        final Principal admin = ((JackrabbitSession) session).getPrincipalManager().getPrincipal("admin");
+        AccessControlUtils.addAccessControlEntry(session, ROOT_PATH, admin, new String[] {Privilege.JCR_WRITE}, false);
+        session.save();
+
+        // observation is asynchronous
+        final long end = System.currentTimeMillis() + 5000;
+        boolean shared = true;
+        while (System.currentTimeMillis() < end) {
+            shared = factory.createResource(null, path, null, null) instanceof SharedNodeResource;
+            if (!shared) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+        assertFalse(shared);
+    }
+}